@@ -0,0 +1,61 @@
+package searchengine.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import searchengine.until.LemmaFinder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Лемматизация страниц при индексации и запроса при поиске. Кеш разборов слов прогревается
+ * на первых итерациях, поэтому измеряется установившийся режим долгой индексации.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class LemmaFinderBenchmark {
+
+    @Param({"300", "3000"})
+    private int words;
+
+    private LemmaFinder lemmaFinder;
+    private List<String> texts;
+    private List<String> queries;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        lemmaFinder = LemmaFinder.getInstance();
+        SyntheticCorpus corpus = new SyntheticCorpus(42);
+        texts = corpus.texts(64, words);
+        queries = List.of(corpus.query(1), corpus.query(2), corpus.query(3), corpus.query(5));
+    }
+
+    private String nextText() {
+        next = (next + 1) & 63;
+        return texts.get(next);
+    }
+
+    @Benchmark
+    public void collectLemmasLegacy(Blackhole blackhole) {
+        blackhole.consume(lemmaFinder.collectLemmasLegacy(nextText()));
+    }
+
+    @Benchmark
+    public void collectLemmaPositions(Blackhole blackhole) {
+        blackhole.consume(lemmaFinder.collectLemmaPositions(nextText()));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void getQueryWords(Blackhole blackhole) {
+        for (String query : queries) {
+            blackhole.consume(lemmaFinder.getQueryWords(query));
+        }
+    }
+}
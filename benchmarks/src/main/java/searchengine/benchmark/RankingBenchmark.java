@@ -0,0 +1,97 @@
+package searchengine.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import searchengine.index.InvertedIndex;
+import searchengine.index.SearchHits;
+import searchengine.until.LemmaFinder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ранжирование результатов: пересечение списков страниц лемм в сегментах индекса с BM25 и отсечением
+ * блоков против прежней суммы rank, и отбор лучших страниц кучей против сортировки всех найденных,
+ * как это делал прежний {@code calculatedRelevance}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class RankingBenchmark {
+
+    private static final int DEPTH = 200;
+
+    @Param({"2000"})
+    private int pagesPerSite;
+
+    @Param({"100000"})
+    private int hitCount;
+
+    private SearchFixture fixture;
+    private InvertedIndex bm25;
+    private InvertedIndex rankSum;
+    private List<List<Set<String>>> queries;
+    private SearchHits hits;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        fixture = new SearchFixture(3, pagesPerSite, 400, 11);
+        bm25 = fixture.invertedIndex("bm25", 4);
+        rankSum = fixture.invertedIndex("rank-sum", 4);
+        LemmaFinder lemmaFinder = LemmaFinder.getInstance();
+        SyntheticCorpus corpus = new SyntheticCorpus(13);
+        queries = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            queries.add(lemmaFinder.getQueryWords(corpus.query(1 + i % 3)));
+        }
+        SplittableRandom random = new SplittableRandom(17);
+        hits = new SearchHits();
+        for (int i = 0; i < hitCount; i++) {
+            hits.add(i + 1, random.nextDouble() * 100);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixture.close();
+    }
+
+    private List<Set<String>> nextQuery() {
+        next = (next + 1) & 15;
+        return queries.get(next);
+    }
+
+    @Benchmark
+    public SearchHits searchBm25() {
+        return bm25.search(nextQuery(), fixture.siteIds(), 1.0, DEPTH);
+    }
+
+    @Benchmark
+    public SearchHits searchRankSum() {
+        return rankSum.search(nextQuery(), fixture.siteIds(), 1.0, DEPTH);
+    }
+
+    @Benchmark
+    public int[] topHitsSelect() {
+        return TopHits.select(hits, DEPTH);
+    }
+
+    @Benchmark
+    public void fullSort(Blackhole blackhole) {
+        Integer[] order = new Integer[hits.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(hits.score(b), hits.score(a)));
+        blackhole.consume(Arrays.copyOf(order, DEPTH));
+    }
+}
@@ -0,0 +1,121 @@
+package searchengine.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import searchengine.config.app.CacheSetting;
+import searchengine.config.metrics.SearchEngineMetrics;
+import searchengine.dto.search.RankedPages;
+import searchengine.model.Page;
+import searchengine.repository.SiteRepository;
+import searchengine.services.CorpusStatistics;
+import searchengine.services.SearchRanker;
+import searchengine.until.LemmaFinder;
+import searchengine.until.SnippetGenerator;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск целиком, как его выполняет {@code IndexingSiteService.systemSearch}: леммы запроса,
+ * ранжированный список через {@link SearchRanker} и сниппеты страниц окна выдачи.
+ * PostgreSQL заменён картами {@link SearchFixture}, Redis - {@link ConcurrentMapCacheManager}:
+ * {@code cold} очищает кеш ранжирования перед каждым запросом, {@code warm} нарезает выдачу из кеша.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+
+    private static final int LIMIT = 20;
+
+    @Param({"2000"})
+    private int pagesPerSite;
+
+    @Param({"0", "40"})
+    private int offset;
+
+    private SearchFixture fixture;
+    private LemmaFinder lemmaFinder;
+    private SearchRanker searchRanker;
+    private Cache rankingCache;
+    private List<String> queries;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        fixture = new SearchFixture(3, pagesPerSite, 400, 23);
+        lemmaFinder = LemmaFinder.getInstance();
+        CorpusStatistics corpusStatistics = new CorpusStatistics(null);
+        fixture.sites().forEach(site -> corpusStatistics.addPages(site.getId(), pagesPerSite));
+        CacheManager cacheManager = new ConcurrentMapCacheManager(SearchRanker.RANKING_CACHE);
+        rankingCache = cacheManager.getCache(SearchRanker.RANKING_CACHE);
+        searchRanker = new SearchRanker(fixture.invertedIndex("bm25", 4), siteRepository(fixture.siteIds()),
+                null, corpusStatistics, new CacheSetting(), cacheManager,
+                new SearchEngineMetrics(new SimpleMeterRegistry()));
+        SyntheticCorpus corpus = new SyntheticCorpus(29);
+        queries = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            queries.add(corpus.query(1 + i % 3));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @Benchmark
+    public List<String> cold() {
+        rankingCache.clear();
+        return search(nextQuery());
+    }
+
+    @Benchmark
+    public List<String> warm() {
+        return search(nextQuery());
+    }
+
+    private String nextQuery() {
+        next = (next + 1) & 15;
+        return queries.get(next);
+    }
+
+    private List<String> search(String query) {
+        List<Set<String>> words = lemmaFinder.getQueryWords(query);
+        Set<String> lemmas = new HashSet<>();
+        words.forEach(lemmas::addAll);
+        RankedPages ranking = searchRanker.ranking(words, null, offset + LIMIT);
+        List<String> snippets = new ArrayList<>(LIMIT);
+        int[] pageIds = ranking.pageIds();
+        for (int i = offset; i < Math.min(pageIds.length, offset + LIMIT); i++) {
+            Page page = fixture.page(pageIds[i]);
+            snippets.add(SnippetGenerator.generatedSnippet(page.getText(), fixture.positions(page.getId(), lemmas)));
+        }
+        return snippets;
+    }
+
+    /**
+     * Репозиторий сайтов поиска по всем сайтам: {@link SearchRanker} спрашивает у него только id активных сайтов.
+     */
+    private static SiteRepository siteRepository(List<Integer> siteIds) {
+        return (SiteRepository) Proxy.newProxyInstance(SiteRepository.class.getClassLoader(),
+                new Class<?>[]{SiteRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "findActiveIds" -> siteIds;
+                    case "toString" -> "SiteRepository[" + siteIds + "]";
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
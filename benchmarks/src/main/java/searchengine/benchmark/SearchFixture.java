@@ -0,0 +1,137 @@
+package searchengine.benchmark;
+
+import searchengine.config.app.IndexSetting;
+import searchengine.index.InvertedIndex;
+import searchengine.model.Index;
+import searchengine.model.Lemma;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.until.LemmaFinder;
+import searchengine.until.TokenPositions;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Проиндексированный синтетический корпус без БД: сайты, страницы, леммы и записи {@code index}
+ * собираются в памяти так же, как их записывает {@code PageWriter}, а инвертированный индекс
+ * строится в сегменты во временном каталоге. Таблицы, которые при поиске читаются из PostgreSQL
+ * (тексты страниц и позиции лемм), заменены картами.
+ */
+public final class SearchFixture implements AutoCloseable {
+
+    private final List<Site> sites = new ArrayList<>();
+    private final Map<Integer, Page> pages = new HashMap<>();
+    private final Map<Integer, Map<String, byte[]>> positions = new HashMap<>();
+    private final List<Index> indexes = new ArrayList<>();
+    private final List<Path> directories = new ArrayList<>();
+
+    public SearchFixture(int siteCount, int pagesPerSite, int words, long seed) throws IOException {
+        LemmaFinder lemmaFinder = LemmaFinder.getInstance();
+        SyntheticCorpus corpus = new SyntheticCorpus(seed);
+        int pageId = 0;
+        int lemmaId = 0;
+        for (int s = 1; s <= siteCount; s++) {
+            Site site = new Site();
+            site.setId(s);
+            site.setUrl("https://site" + s + ".example");
+            site.setName("Сайт " + s);
+            sites.add(site);
+            Map<String, Lemma> siteLemmas = new HashMap<>();
+            for (int p = 0; p < pagesPerSite; p++) {
+                String text = corpus.text(words / 2 + p % words);
+                Page page = Page.builder().id(++pageId).site(site).path("/page/" + p).code(200)
+                        .title("Страница " + p).text(text).build();
+                pages.put(page.getId(), page);
+                Map<String, byte[]> pagePositions = new HashMap<>();
+                for (Map.Entry<String, TokenPositions> entry : lemmaFinder.collectLemmaPositions(text).entrySet()) {
+                    Lemma lemma = siteLemmas.get(entry.getKey());
+                    if (lemma == null) {
+                        lemma = Lemma.builder().id(++lemmaId).site(site).lemma(entry.getKey()).frequency(0).build();
+                        siteLemmas.put(entry.getKey(), lemma);
+                    }
+                    lemma.setFrequency(lemma.getFrequency() + 1);
+                    Index index = new Index();
+                    index.setPage(page);
+                    index.setLemma(lemma);
+                    index.setRank((float) entry.getValue().size());
+                    index.setPositions(entry.getValue().toBytes());
+                    indexes.add(index);
+                    pagePositions.put(entry.getKey(), index.getPositions());
+                }
+                positions.put(page.getId(), pagePositions);
+            }
+        }
+    }
+
+    public List<Site> sites() {
+        return sites;
+    }
+
+    public List<Integer> siteIds() {
+        return sites.stream().map(Site::getId).toList();
+    }
+
+    public int pageCount() {
+        return pages.size();
+    }
+
+    public Page page(int pageId) {
+        return pages.get(pageId);
+    }
+
+    /**
+     * Позиции лемм запроса на странице в порядке {@code lemmas}, как их читает поиск из {@code index.positions}.
+     */
+    public List<TokenPositions> positions(int pageId, Collection<String> lemmas) {
+        Map<String, byte[]> pagePositions = positions.getOrDefault(pageId, Map.of());
+        List<TokenPositions> found = new ArrayList<>(lemmas.size());
+        for (String lemma : lemmas) {
+            byte[] bytes = pagePositions.get(lemma);
+            if (bytes != null) {
+                found.add(TokenPositions.fromBytes(bytes));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Строит готовый к поиску индекс из {@code segments} сегментов с формулой релевантности {@code scorer}.
+     */
+    public InvertedIndex invertedIndex(String scorer, int segments) throws IOException {
+        Path directory = Files.createTempDirectory("search-benchmark-index");
+        directories.add(directory);
+        IndexSetting setting = new IndexSetting();
+        setting.setDirectory(directory.toString());
+        setting.setScorer(scorer);
+        InvertedIndex index = new InvertedIndex(setting);
+        List<Page> all = pages.values().stream().sorted(Comparator.comparing(Page::getId)).toList();
+        int chunk = (all.size() + segments - 1) / segments;
+        for (int from = 0; from < all.size(); from += chunk) {
+            List<Page> segmentPages = all.subList(from, Math.min(all.size(), from + chunk));
+            Set<Integer> ids = new HashSet<>();
+            segmentPages.forEach(page -> ids.add(page.getId()));
+            index.index(segmentPages, indexes.stream().filter(i -> ids.contains(i.getPage().getId())).toList());
+            index.flush();
+        }
+        index.markReady();
+        return index;
+    }
+
+    @Override
+    public void close() {
+        for (Path directory : directories) {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(file);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
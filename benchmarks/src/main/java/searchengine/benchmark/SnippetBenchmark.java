@@ -0,0 +1,83 @@
+package searchengine.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import searchengine.until.LemmaFinder;
+import searchengine.until.SnippetGenerator;
+import searchengine.until.TokenPositions;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сниппет по позициям лемм из индекса против прежнего разбора HTML регулярными выражениями.
+ * Позиции, как и при поиске, читаются из байтов столбца {@code index.positions}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class SnippetBenchmark {
+
+    private static final int PAGES = 32;
+
+    @Param({"500", "5000"})
+    private int words;
+
+    private String query;
+    private String[] texts;
+    private String[] html;
+    private List<List<byte[]>> positions;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        LemmaFinder lemmaFinder = LemmaFinder.getInstance();
+        SyntheticCorpus corpus = new SyntheticCorpus(7);
+        query = corpus.query(3);
+        Set<String> lemmas = new HashSet<>();
+        lemmaFinder.getQueryWords(query).forEach(lemmas::addAll);
+        texts = corpus.texts(PAGES, words).toArray(String[]::new);
+        html = new String[PAGES];
+        positions = new ArrayList<>(PAGES);
+        for (int i = 0; i < PAGES; i++) {
+            html[i] = "<html><head><title>Страница " + i + "</title></head><body><p>" + texts[i] + "</p></body></html>";
+            Map<String, TokenPositions> pageLemmas = lemmaFinder.collectLemmaPositions(texts[i]);
+            List<byte[]> pagePositions = new ArrayList<>();
+            for (String lemma : lemmas) {
+                TokenPositions lemmaPositions = pageLemmas.get(lemma);
+                if (lemmaPositions != null) {
+                    pagePositions.add(lemmaPositions.toBytes());
+                }
+            }
+            positions.add(pagePositions);
+        }
+    }
+
+    private int nextPage() {
+        next = (next + 1) % PAGES;
+        return next;
+    }
+
+    @Benchmark
+    public void generatedSnippet(Blackhole blackhole) {
+        int page = nextPage();
+        List<TokenPositions> lemmas = new ArrayList<>();
+        for (byte[] bytes : positions.get(page)) {
+            lemmas.add(TokenPositions.fromBytes(bytes));
+        }
+        blackhole.consume(SnippetGenerator.generatedSnippet(texts[page], lemmas));
+    }
+
+    @Benchmark
+    public void generatedSnippetLegacy(Blackhole blackhole) {
+        blackhole.consume(SnippetGenerator.generatedSnippet(query, html[nextPage()]));
+    }
+}
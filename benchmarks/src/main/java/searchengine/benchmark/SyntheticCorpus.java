@@ -0,0 +1,120 @@
+package searchengine.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Воспроизводимый русский корпус для бенчмарков: слова выбираются из словаря по закону Ципфа
+ * (частые слова встречаются на порядки чаще редких, как в настоящих текстах), с пунктуацией,
+ * заглавными буквами, числами и латиницей между ними. Одинаковое зерно даёт одинаковые тексты.
+ */
+public final class SyntheticCorpus {
+
+    private static final String[] WORDS = {
+            "и", "в", "не", "на", "с", "что", "по", "для", "как", "из",
+            "поиск", "поиска", "поиском", "страница", "страницы", "странице", "сайт", "сайта", "сайтов", "сайте",
+            "индекс", "индекса", "индексация", "индексации", "запрос", "запроса", "запросы", "результат", "результаты",
+            "система", "системы", "данные", "данных", "база", "базы", "сервер", "сервера", "пользователь",
+            "пользователи", "пользователей", "документ", "документа", "документы", "текст", "текста", "тексты",
+            "слово", "слова", "слов", "лемма", "леммы", "морфология", "анализ", "анализа", "время", "времени",
+            "работа", "работы", "работает", "работают", "быстрый", "быстрая", "быстро", "новый", "новая", "новые",
+            "большой", "большая", "большие", "русский", "русского", "язык", "языка", "город", "города", "москва",
+            "москвы", "россия", "россии", "компания", "компании", "проект", "проекта", "проекты", "история",
+            "истории", "книга", "книги", "статья", "статьи", "новость", "новости", "жизнь", "жизни", "человек",
+            "люди", "людей", "дело", "дела", "день", "дня", "год", "года", "лет", "вопрос", "вопросы", "ответ",
+            "ответы", "место", "места", "образ", "образом", "часть", "части", "случай", "случае", "рука", "руки",
+            "глаз", "глаза", "дом", "дома", "мир", "мира", "сила", "силы", "вода", "воды", "земля", "земли",
+            "музыка", "музыки", "фильм", "фильма", "фильмы", "игра", "игры", "школа", "школы", "университет",
+            "университета", "студент", "студенты", "программа", "программы", "программирование", "разработка",
+            "разработки", "разработчик", "разработчики", "алгоритм", "алгоритма", "алгоритмы", "память", "памяти",
+            "скорость", "скорости", "производительность", "производительности", "нагрузка", "нагрузки",
+            "делать", "делает", "сделать", "говорить", "говорит", "сказал", "знать", "знает", "видеть", "видит",
+            "искать", "ищет", "найти", "нашёл", "читать", "читает", "писать", "пишет", "строить", "строит",
+            "хороший", "хорошая", "хорошо", "последний", "последние", "главный", "главная", "важный", "важные",
+            "очень", "тоже", "также", "уже", "ещё", "только", "потом", "здесь", "сейчас", "всегда"
+    };
+    private static final String[] NOISE = {"2024", "42", "http", "Java", "PostgreSQL", "—", "(", ")", "«", "»"};
+    private static final double ZIPF_EXPONENT = 1.07;
+
+    private final SplittableRandom random;
+    private final double[] cumulative = new double[WORDS.length];
+
+    public SyntheticCorpus(long seed) {
+        this.random = new SplittableRandom(seed);
+        double sum = 0;
+        for (int rank = 0; rank < WORDS.length; rank++) {
+            sum += 1.0 / Math.pow(rank + 1, ZIPF_EXPONENT);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < WORDS.length; rank++) {
+            cumulative[rank] /= sum;
+        }
+    }
+
+    public String word() {
+        double u = random.nextDouble();
+        int low = 0;
+        int high = WORDS.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulative[mid] < u) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return WORDS[low];
+    }
+
+    /**
+     * Текст из {@code words} слов, разбитый на предложения по 6-20 слов.
+     */
+    public String text(int words) {
+        StringBuilder text = new StringBuilder(words * 9);
+        int sentence = 0;
+        int sentenceLength = 6 + random.nextInt(15);
+        for (int i = 0; i < words; i++) {
+            String word = word();
+            if (sentence == 0) {
+                text.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+            } else {
+                text.append(word);
+            }
+            if (random.nextInt(25) == 0) {
+                text.append(' ').append(NOISE[random.nextInt(NOISE.length)]);
+            }
+            if (++sentence == sentenceLength) {
+                text.append(random.nextInt(8) == 0 ? "! " : ". ");
+                sentence = 0;
+                sentenceLength = 6 + random.nextInt(15);
+            } else {
+                text.append(random.nextInt(12) == 0 ? ", " : " ");
+            }
+        }
+        return text.toString();
+    }
+
+    public List<String> texts(int count, int words) {
+        List<String> texts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            texts.add(text(words / 2 + random.nextInt(words)));
+        }
+        return texts;
+    }
+
+    /**
+     * Запрос из {@code words} разных слов без служебных: часть слов частые, часть - из хвоста словаря.
+     */
+    public String query(int words) {
+        StringBuilder query = new StringBuilder();
+        int added = 0;
+        while (added < words) {
+            String word = added % 2 == 0 ? word() : WORDS[10 + random.nextInt(WORDS.length - 10)];
+            if (word.length() > 3 && query.indexOf(word) < 0) {
+                query.append(added++ == 0 ? "" : " ").append(word);
+            }
+        }
+        return query.toString();
+    }
+}
@@ -0,0 +1,71 @@
+package searchengine.benchmark;
+
+import searchengine.index.SearchHits;
+
+/**
+ * Отбор {@code k} лучших из уже собранных результатов без сортировки всех найденных страниц:
+ * куча на минимум из {@code k} номеров в {@link SearchHits}, затем сортировка только отобранных.
+ * При равной релевантности выше страница с меньшим id. В поиске лучшие страницы отбираются по ходу
+ * пересечения, здесь отбор оставлен для сравнения кучи с полной сортировкой в {@link RankingBenchmark}.
+ */
+final class TopHits {
+
+    private TopHits() {
+    }
+
+    /**
+     * @return номера лучших результатов в {@code hits} по убыванию релевантности, не больше {@code k}
+     */
+    static int[] select(SearchHits hits, int k) {
+        int size = Math.min(k, hits.size());
+        if (size <= 0) {
+            return new int[0];
+        }
+        int[] heap = new int[size];
+        for (int i = 0; i < size; i++) {
+            heap[i] = i;
+        }
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(hits, heap, i, size);
+        }
+        for (int i = size; i < hits.size(); i++) {
+            if (better(hits, i, heap[0])) {
+                heap[0] = i;
+                siftDown(hits, heap, 0, size);
+            }
+        }
+        for (int end = size - 1; end > 0; end--) {
+            int worst = heap[0];
+            heap[0] = heap[end];
+            heap[end] = worst;
+            siftDown(hits, heap, 0, end);
+        }
+        return heap;
+    }
+
+    private static void siftDown(SearchHits hits, int[] heap, int i, int size) {
+        while (true) {
+            int worst = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && better(hits, heap[worst], heap[left])) {
+                worst = left;
+            }
+            if (right < size && better(hits, heap[worst], heap[right])) {
+                worst = right;
+            }
+            if (worst == i) {
+                return;
+            }
+            int swap = heap[i];
+            heap[i] = heap[worst];
+            heap[worst] = swap;
+            i = worst;
+        }
+    }
+
+    private static boolean better(SearchHits hits, int a, int b) {
+        int compare = Double.compare(hits.score(a), hits.score(b));
+        return compare > 0 || (compare == 0 && hits.pageId(a) < hits.pageId(b));
+    }
+}
@@ -0,0 +1,37 @@
+package searchengine.config.app;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "search-cache")
+public class CacheSetting {
+
+    /**
+     * Сколько ответов держит локальный кеш (L1) каждого экземпляра приложения.
+     */
+    private long localMaxEntries = 10_000;
+
+    private Duration localTtl = Duration.ofMinutes(5);
+
+    /**
+     * Время жизни поисковых записей в Redis и их меток.
+     */
+    private Duration remoteTtl = Duration.ofMinutes(30);
+
+    /**
+     * Сколько лучших страниц запроса ранжируется и кешируется за раз, сколько бы ни запросила первая выдача.
+     */
+    private int rankingDepth = 200;
+
+    /**
+     * Канал Redis pub/sub, по которому экземпляры сообщают друг другу об очистке кеша.
+     */
+    private String invalidationChannel = "search-cache:invalidate";
+}
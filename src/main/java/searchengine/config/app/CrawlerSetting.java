@@ -0,0 +1,44 @@
+package searchengine.config.app;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "crawler")
+public class CrawlerSetting {
+
+    private int maxConcurrency = 64;
+
+    private int perHostConcurrency = 8;
+
+    private int timeout = 5000;
+
+    private double requestsPerSecond = 10;
+
+    private int burst = 10;
+
+    private boolean respectRobots = true;
+
+    private boolean incremental = false;
+
+    /**
+     * Как часто сохраняется состояние обхода для продолжения после остановки или перезапуска.
+     */
+    private Duration checkpointInterval = Duration.ofSeconds(30);
+
+    /**
+     * Продолжать прерванный обход с сохранённого состояния, а не начинать заново.
+     */
+    private boolean resume = true;
+
+    /**
+     * Держать отпечатки посещённых ссылок вне кучи.
+     */
+    private boolean visitedOffHeap = false;
+}
@@ -0,0 +1,33 @@
+package searchengine.config.app;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "search-index")
+public class IndexSetting {
+
+    private String directory = "index-data";
+
+    private int mergeFactor = 10;
+
+    private long maxSegmentBytes = 1L << 30;
+
+    /**
+     * Сколько страниц копится в буфере индекса, прежде чем он записывается сегментом.
+     */
+    private int flushPages = 20_000;
+
+    /**
+     * Формула релевантности поиска: {@code bm25} или прежняя сумма rank {@code rank-sum}.
+     */
+    private String scorer = "bm25";
+
+    private double bm25K1 = 1.2;
+
+    private double bm25B = 0.75;
+}
@@ -0,0 +1,19 @@
+package searchengine.config.app;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-pipeline")
+public class PipelineSetting {
+
+    private int queueCapacity = 200;
+
+    private int batchSize = 100;
+
+    private int lemmatizers = Runtime.getRuntime().availableProcessors();
+}
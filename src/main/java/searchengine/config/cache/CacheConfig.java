@@ -1,6 +1,6 @@
 package searchengine.config.cache;
 
-import org.springframework.cache.CacheManager;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cache.interceptor.KeyGenerator;
 import org.springframework.context.annotation.Bean;
@@ -8,21 +8,35 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import searchengine.config.app.CacheSetting;
+import searchengine.until.LemmaFinder;
+import searchengine.until.SearchCacheKey;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.Duration;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Configuration
 @EnableCaching
 public class CacheConfig {
 
+    /**
+     * Кеши в два уровня: локальный Caffeine перед Redis, см. {@link TwoLevelCacheManager}.
+     */
     @Bean
-    public CacheManager redisCacheManager(LettuceConnectionFactory factory) {
+    public TwoLevelCacheManager redisCacheManager(LettuceConnectionFactory factory, CacheSetting cacheSetting,
+                                                  MeterRegistry meterRegistry) {
         RedisCacheConfiguration defaultConfig = RedisCacheConfiguration.defaultCacheConfig()
                 .entryTtl(Duration.ofMinutes(30))
                 .disableCachingNullValues()
@@ -32,21 +46,45 @@ public class CacheConfig {
                         .fromSerializer(new GenericJackson2JsonRedisSerializer()));
 
         Map<String, RedisCacheConfiguration> cacheConfigs = new HashMap<>();
-        cacheConfigs.put("Search_Result", defaultConfig.entryTtl(Duration.ofMinutes(30)));
+        cacheConfigs.put("Search_Result", defaultConfig.entryTtl(cacheSetting.getRemoteTtl()));
+        cacheConfigs.put("Search_Ranking", defaultConfig.entryTtl(cacheSetting.getRemoteTtl()));
 
-        return RedisCacheManager.builder(factory)
+        RedisCacheManager remote = RedisCacheManager.builder(factory)
                 .cacheDefaults(defaultConfig)
                 .withInitialCacheConfigurations(cacheConfigs)
-                .transactionAware()
                 .build();
+        remote.afterPropertiesSet();
+        TwoLevelCacheManager cacheManager = new TwoLevelCacheManager(remote, cacheSetting, new StringRedisTemplate(factory),
+                meterRegistry);
+        cacheManager.setTransactionAware(true);
+        return cacheManager;
     }
 
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListener(LettuceConnectionFactory factory,
+                                                                   TwoLevelCacheManager redisCacheManager,
+                                                                   CacheSetting cacheSetting) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(factory);
+        container.addMessageListener(redisCacheManager, new ChannelTopic(cacheSetting.getInvalidationChannel()));
+        return container;
+    }
+
+    /**
+     * Ключ ответа {@code systemSearch(query, siteUrl, offset, limit)}: слова запроса, сайт и окно выдачи,
+     * с метками сайта и лемм, см. {@link SearchCacheKey}.
+     */
     @Bean
     public KeyGenerator searchKeyGenerator() {
         return (target, method, params) -> {
             String query = (String) params[0];
             String siteUrl = (String) params[1];
-            return "Search_" + siteUrl + "_" + query.hashCode();
+            try {
+                List<Set<String>> words = LemmaFinder.getInstance().getQueryWords(query);
+                return SearchCacheKey.page(words, siteUrl, (Integer) params[2], (Integer) params[3]);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
         };
     }
 }
@@ -0,0 +1,13 @@
+package searchengine.config.cache;
+
+import java.util.Collection;
+
+/**
+ * Ключ кеша с метками. {@link TwoLevelCache} при записи регистрирует ключ под каждой меткой,
+ * а {@link TwoLevelCacheManager#tagged} находит записи по метке для точечной очистки.
+ * В Redis и локальный уровень ключ попадает строкой {@link #toString()}.
+ */
+public interface TaggedCacheKey {
+
+    Collection<String> tags();
+}
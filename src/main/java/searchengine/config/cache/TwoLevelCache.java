@@ -0,0 +1,146 @@
+package searchengine.config.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+/**
+ * Кеш в два уровня: ограниченный по размеру и времени жизни Caffeine в куче (L1) перед общим Redis (L2).
+ * Чтение сначала идёт в L1, промах читается из Redis и оседает в L1. Удаления применяются к обоим уровням
+ * и рассылаются остальным экземплярам через {@link TwoLevelCacheManager}, которые чистят только свой L1.
+ * Ключи приводятся к строке, как это делает Redis, поэтому удаление по строке находит и запись с ключом-объектом.
+ * Записи с {@link TaggedCacheKey} регистрируются под своими метками.
+ * Чтения считаются в {@code searchengine.cache.gets} с тегами {@code level} ({@code local}, {@code remote})
+ * и {@code result} ({@code hit}, {@code miss}): промах L1 - это одно чтение L2.
+ */
+public class TwoLevelCache implements Cache {
+
+    private final String name;
+    private final com.github.benmanes.caffeine.cache.Cache<String, Object> local;
+    private final Cache remote;
+    private final TwoLevelCacheManager manager;
+    private final Counter localHits;
+    private final Counter localMisses;
+    private final Counter remoteHits;
+    private final Counter remoteMisses;
+
+    TwoLevelCache(String name, Cache remote, long localMaxEntries, Duration localTtl, TwoLevelCacheManager manager,
+                  MeterRegistry registry) {
+        this.name = name;
+        this.remote = remote;
+        this.manager = manager;
+        this.local = Caffeine.newBuilder()
+                .maximumSize(localMaxEntries)
+                .expireAfterWrite(localTtl)
+                .build();
+        this.localHits = gets(registry, "local", "hit");
+        this.localMisses = gets(registry, "local", "miss");
+        this.remoteHits = gets(registry, "remote", "hit");
+        this.remoteMisses = gets(registry, "remote", "miss");
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return local;
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        Object value = local.getIfPresent(key.toString());
+        if (value != null) {
+            localHits.increment();
+            return new SimpleValueWrapper(value);
+        }
+        localMisses.increment();
+        ValueWrapper wrapper = remote.get(key);
+        if (wrapper != null && wrapper.get() != null) {
+            remoteHits.increment();
+            local.put(key.toString(), wrapper.get());
+        } else {
+            remoteMisses.increment();
+        }
+        return wrapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper == null ? null : wrapper.get();
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Значение кеша " + name + " не является " + type.getName() + ": " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Object value = local.getIfPresent(key.toString());
+        if (value != null) {
+            localHits.increment();
+        } else {
+            localMisses.increment();
+            value = remote.get(key, valueLoader);
+            if (value != null) {
+                local.put(key.toString(), value);
+                tag(key);
+            }
+        }
+        return (T) value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        remote.put(key, value);
+        if (value != null) {
+            local.put(key.toString(), value);
+            tag(key);
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        remote.evict(key);
+        local.invalidate(key.toString());
+        manager.publishEvict(name, key);
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        local.invalidateAll();
+        manager.publishClear(name);
+    }
+
+    void evictLocal(String key) {
+        local.invalidate(key);
+    }
+
+    void clearLocal() {
+        local.invalidateAll();
+    }
+
+    private Counter gets(MeterRegistry registry, String level, String result) {
+        return Counter.builder("searchengine.cache.gets")
+                .description("Чтения двухуровневого кеша")
+                .tags("cache", name, "level", level, "result", result)
+                .register(registry);
+    }
+
+    private void tag(Object key) {
+        if (key instanceof TaggedCacheKey tagged) {
+            manager.tag(name, key.toString(), tagged.tags());
+        }
+    }
+}
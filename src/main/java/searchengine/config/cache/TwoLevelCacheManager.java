@@ -0,0 +1,169 @@
+package searchengine.config.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.transaction.AbstractTransactionSupportingCacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import searchengine.config.app.CacheSetting;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Менеджер кешей {@link TwoLevelCache} поверх менеджера Redis. Каждое удаление публикуется в канал
+ * {@code search-cache.invalidation-channel} сообщением {@code узел|кеш|*} (очистка) или {@code узел|кеш|=ключ},
+ * а полученные от других узлов сообщения чистят локальный уровень. Поддерживает транзакции так же,
+ * как прежний {@code RedisCacheManager.transactionAware()}: удаление в транзакции выполняется после коммита.
+ * Ключ передаётся строкой {@code toString()}.
+ * <p>
+ * Метки {@link TaggedCacheKey} хранятся в Redis множествами ключей {@code search-cache:tag:кеш:метка}
+ * со временем жизни записей кеша, поэтому видны всем узлам.
+ */
+@Slf4j
+public class TwoLevelCacheManager extends AbstractTransactionSupportingCacheManager implements MessageListener {
+
+    private static final String CLEAR = "*";
+    private static final String KEY = "=";
+    private static final String TAG_PREFIX = "search-cache:tag:";
+
+    private final CacheManager remote;
+    private final CacheSetting setting;
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+
+    public TwoLevelCacheManager(CacheManager remote, CacheSetting setting, StringRedisTemplate redisTemplate,
+                                MeterRegistry meterRegistry) {
+        this.remote = remote;
+        this.setting = setting;
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected Collection<? extends Cache> loadCaches() {
+        return List.of();
+    }
+
+    @Override
+    protected Cache getMissingCache(String name) {
+        Cache remoteCache = remote.getCache(name);
+        if (remoteCache == null) {
+            return null;
+        }
+        return caches.computeIfAbsent(name, cacheName -> new TwoLevelCache(cacheName, remoteCache,
+                setting.getLocalMaxEntries(), setting.getLocalTtl(), this, meterRegistry));
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|", 3);
+        if (parts.length < 3 || parts[0].equals(nodeId)) {
+            return;
+        }
+        TwoLevelCache cache = caches.get(parts[1]);
+        if (cache == null) {
+            return;
+        }
+        if (parts[2].equals(CLEAR)) {
+            cache.clearLocal();
+        } else if (parts[2].startsWith(KEY)) {
+            cache.evictLocal(parts[2].substring(KEY.length()));
+        }
+    }
+
+    /**
+     * Ключи записей кеша, зарегистрированных под меткой. Могут включать уже истёкшие записи.
+     */
+    public Set<String> tagged(String cacheName, String tag) {
+        Set<String> keys = redisTemplate.opsForSet().members(tagKey(cacheName, tag));
+        return keys == null ? Set.of() : keys;
+    }
+
+    /**
+     * Снимает метки с удалённых записей. Внутри транзакции - после коммита, вместе с удалением самих записей:
+     * иначе до коммита запись ещё в кеше, а найти её по метке уже нельзя.
+     */
+    public void untag(String cacheName, Collection<String> tags, Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        if (isTransactionAware() && TransactionSynchronizationManager.isSynchronizationActive()) {
+            List<String> deferredTags = List.copyOf(tags);
+            List<String> deferredKeys = List.copyOf(keys);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    removeTags(cacheName, deferredTags, deferredKeys);
+                }
+            });
+            return;
+        }
+        removeTags(cacheName, tags, keys);
+    }
+
+    private void removeTags(String cacheName, Collection<String> tags, Collection<String> keys) {
+        String[] members = keys.toArray(String[]::new);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String tag : tags) {
+                connection.setCommands().sRem(bytes(tagKey(cacheName, tag)), Arrays.stream(members)
+                        .map(TwoLevelCacheManager::bytes).toArray(byte[][]::new));
+            }
+            return null;
+        });
+    }
+
+    void tag(String cacheName, String key, Collection<String> tags) {
+        long ttlSeconds = setting.getRemoteTtl().toSeconds();
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (String tag : tags) {
+                    byte[] tagKey = bytes(tagKey(cacheName, tag));
+                    connection.setCommands().sAdd(tagKey, bytes(key));
+                    connection.keyCommands().expire(tagKey, ttlSeconds);
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            log.warn("Не удалось сохранить метки записи кеша {}: {}", cacheName, e.getMessage());
+        }
+    }
+
+    void publishEvict(String cacheName, Object key) {
+        publish(cacheName + "|" + KEY + key);
+    }
+
+    void publishClear(String cacheName) {
+        publish(cacheName + "|" + CLEAR);
+    }
+
+    private static String tagKey(String cacheName, String tag) {
+        return TAG_PREFIX + cacheName + ":" + tag;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void publish(String message) {
+        try {
+            redisTemplate.convertAndSend(setting.getInvalidationChannel(), nodeId + "|" + message);
+        } catch (RuntimeException e) {
+            log.warn("Не удалось разослать очистку кеша {}: {}", message, e.getMessage());
+        }
+    }
+}
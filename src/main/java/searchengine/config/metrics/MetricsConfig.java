@@ -0,0 +1,26 @@
+package searchengine.config.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import searchengine.index.InvertedIndex;
+
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Размер инвертированного индекса: живые страницы и число сегментов до слияния.
+     */
+    @Bean
+    public MeterBinder invertedIndexMetrics(InvertedIndex invertedIndex) {
+        return registry -> {
+            Gauge.builder("searchengine.index.pages", invertedIndex, InvertedIndex::pageCount)
+                    .description("Страниц в инвертированном индексе")
+                    .register(registry);
+            Gauge.builder("searchengine.index.segments", invertedIndex, InvertedIndex::segmentCount)
+                    .description("Сегментов инвертированного индекса")
+                    .register(registry);
+        };
+    }
+}
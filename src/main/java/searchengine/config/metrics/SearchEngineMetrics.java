@@ -0,0 +1,124 @@
+package searchengine.config.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Метрики этапов индексации и поиска. Все метры с префиксом {@code searchengine}, сайт - тег {@code site} (url сайта):
+ * <ul>
+ *     <li>{@code searchengine.crawl.fetch} - время HTTP-запроса страницы с гистограммой, теги {@code site}, {@code status};
+ *     скорость обхода - {@code rate()} его счётчика</li>
+ *     <li>{@code searchengine.crawl.pages} - страницы обхода по итогу: {@code changed}, {@code unchanged}, {@code failed}</li>
+ *     <li>{@code searchengine.lemmatize} - разбор и лемматизация одной страницы</li>
+ *     <li>{@code searchengine.persist} - сохранение пачки страниц до конца транзакции, тег {@code outcome};
+ *     {@code searchengine.persist.rows} - записанные строки по таблицам</li>
+ *     <li>{@code searchengine.pipeline.queue} - заполнение очередей конвейера, тег {@code stage}</li>
+ *     <li>{@code searchengine.search.phase} - этапы поиска: {@code lemmas}, {@code intersection}, {@code ranking},
+ *     {@code pages}, {@code snippets}</li>
+ * </ul>
+ * Метры создаются один раз на сочетание тегов и дальше берутся из карт, чтобы горячие пути не искали их в реестре.
+ */
+@Component
+public class SearchEngineMetrics {
+
+    public static final String PHASE_LEMMAS = "lemmas";
+    public static final String PHASE_INTERSECTION = "intersection";
+    public static final String PHASE_RANKING = "ranking";
+    public static final String PHASE_PAGES = "pages";
+    public static final String PHASE_SNIPPETS = "snippets";
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> fetchTimers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> crawledPages = new ConcurrentHashMap<>();
+    private final Map<String, Timer> lemmatizeTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> persistTimers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> persistedRows = new ConcurrentHashMap<>();
+    private final Map<String, Timer> searchPhases = new ConcurrentHashMap<>();
+
+    public SearchEngineMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public Timer.Sample startTimer() {
+        return Timer.start(registry);
+    }
+
+    /**
+     * @param status код ответа или {@code error}, если ответа нет
+     */
+    public void fetched(String site, String status, Timer.Sample sample) {
+        sample.stop(fetchTimers.computeIfAbsent(site + '|' + status, key -> Timer.builder("searchengine.crawl.fetch")
+                .description("Время загрузки страницы")
+                .tags("site", site, "status", status)
+                .publishPercentileHistogram()
+                .register(registry)));
+    }
+
+    /**
+     * @param result {@code changed}, {@code unchanged} или {@code failed}
+     */
+    public void crawled(String site, String result) {
+        crawledPages.computeIfAbsent(site + '|' + result, key -> Counter.builder("searchengine.crawl.pages")
+                .description("Обработанные обходом страницы")
+                .tags("site", site, "result", result)
+                .register(registry)).increment();
+    }
+
+    public <T> T lemmatize(String site, Supplier<T> lemmatization) {
+        return lemmatizeTimers.computeIfAbsent(site, key -> Timer.builder("searchengine.lemmatize")
+                .description("Лемматизация страницы")
+                .tag("site", site)
+                .publishPercentileHistogram()
+                .register(registry)).record(lemmatization);
+    }
+
+    /**
+     * @param committed {@code false}, если транзакция пачки откатилась
+     */
+    public void persisted(String site, Timer.Sample sample, boolean committed) {
+        String outcome = committed ? "committed" : "rolled_back";
+        sample.stop(persistTimers.computeIfAbsent(site + '|' + outcome, key -> Timer.builder("searchengine.persist")
+                .description("Сохранение пачки страниц")
+                .tags("site", site, "outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry)));
+    }
+
+    public void persistedRows(String site, String table, long rows) {
+        persistedRows.computeIfAbsent(site + '|' + table, key -> Counter.builder("searchengine.persist.rows")
+                .description("Записанные строки")
+                .baseUnit("rows")
+                .tags("site", site, "table", table)
+                .register(registry)).increment(rows);
+    }
+
+    public <T> T searchPhase(String phase, Supplier<T> body) {
+        return searchPhases.computeIfAbsent(phase, key -> Timer.builder("searchengine.search.phase")
+                .description("Этап поиска")
+                .tag("phase", phase)
+                .publishPercentileHistogram()
+                .register(registry)).record(body);
+    }
+
+    /**
+     * Заполнение очереди конвейера; датчик нужно удалить {@link #remove(Gauge)}, когда конвейер завершён.
+     */
+    public Gauge queueGauge(String site, String stage, Supplier<Number> size) {
+        return Gauge.builder("searchengine.pipeline.queue", size)
+                .description("Элементов в очереди конвейера индексации")
+                .tags("site", site, "stage", stage)
+                .strongReference(true)
+                .register(registry);
+    }
+
+    public void remove(Gauge gauge) {
+        registry.remove(gauge);
+    }
+}
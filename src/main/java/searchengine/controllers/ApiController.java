@@ -3,8 +3,11 @@ package searchengine.controllers;
 import jakarta.validation.constraints.NotBlank;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import searchengine.dto.statistics.StatisticsResponse;
+import searchengine.services.IndexingProgress;
 import searchengine.services.IndexingSiteService;
 import searchengine.dto.response.ResponseBoolean;
 import searchengine.services.StatisticsServiceImpl;
@@ -20,6 +23,8 @@ public class ApiController {
 
     private final IndexingSiteService indexingSiteService;
 
+    private final IndexingProgress indexingProgress;
+
     @GetMapping("/search")
     public ResponseBoolean search(@RequestParam String query,
                                   @RequestParam(required = false) String site,
@@ -35,10 +40,15 @@ public class ApiController {
         return statisticsService.getStatistics();
     }
 
+    @GetMapping(value = "/indexing/progress", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter indexingProgress() {
+        return indexingProgress.subscribe();
+    }
+
     @ResponseStatus(HttpStatus.OK)
     @GetMapping("/startIndexing")
-    public CompletableFuture<ResponseBoolean> startIndexing(){
-       return indexingSiteService.startIndexingSite();
+    public CompletableFuture<ResponseBoolean> startIndexing(@RequestParam(required = false) Boolean incremental){
+       return indexingSiteService.startIndexingSite(incremental);
     }
 
     @ResponseStatus(HttpStatus.OK)
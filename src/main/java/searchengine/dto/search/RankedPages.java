@@ -0,0 +1,28 @@
+package searchengine.dto.search;
+
+/**
+ * Ранжированный список страниц по запросу: первые {@code pageIds.length} из {@code totalHits} найденных
+ * по убыванию релевантности. Кешируется один раз на набор лемм и сайт, страницы выдачи нарезаются из него.
+ */
+public record RankedPages(
+
+        int[] pageIds,
+
+        double[] scores,
+
+        int totalHits
+) {
+
+    public static final RankedPages EMPTY = new RankedPages(new int[0], new double[0], 0);
+
+    /**
+     * Хватает ли списка для выдачи первых {@code needed} страниц.
+     */
+    public boolean covers(int needed) {
+        return pageIds.length >= Math.min(needed, totalHits);
+    }
+
+    public double maxScore() {
+        return scores.length == 0 ? 0 : scores[0];
+    }
+}
@@ -0,0 +1,21 @@
+package searchengine.dto.statistics;
+
+import lombok.Data;
+
+@Data
+public class IndexingProgressItem {
+    private String url;
+    private String name;
+    private String status;
+    private String error;
+    private Long startTime;
+    private Long discovered;
+    private Long fetched;
+    private Long failed;
+    private Long lemmatized;
+    private Long indexed;
+    private Integer frontier;
+    private Integer queue;
+    private Double pagesPerSecond;
+    private Long etaSeconds;
+}
@@ -0,0 +1,42 @@
+package searchengine.index;
+
+/**
+ * Okapi BM25: rank леммы на странице - частота термина, длина страницы - число вхождений всех лемм на ней.
+ * <pre>
+ * idf   = ln(1 + (N - df + 0.5) / (df + 0.5))
+ * score = idf * tf * (k1 + 1) / (tf + k1 * (1 - b + b * length / avgLength))
+ * </pre>
+ * Оценка растёт с tf и убывает с длиной страницы, поэтому верхняя граница блока берётся
+ * при максимальном rank блока и нулевой длине.
+ */
+public final class Bm25Scorer implements Scorer {
+
+    private final double k1;
+    private final double b;
+
+    public Bm25Scorer(double k1, double b) {
+        if (k1 < 0 || b < 0 || b > 1) {
+            throw new IllegalArgumentException("Параметры BM25 вне допустимых значений: k1=" + k1 + ", b=" + b);
+        }
+        this.k1 = k1;
+        this.b = b;
+    }
+
+    @Override
+    public TermWeight weight(int docFrequency, int pageCount, double averagePageLength) {
+        double idf = Math.log(1 + (pageCount - docFrequency + 0.5) / (docFrequency + 0.5));
+        double lengthNorm = averagePageLength > 0 ? k1 * b / averagePageLength : 0;
+        double minNorm = k1 * (1 - b);
+        return new TermWeight() {
+            @Override
+            public double score(float rank, int pageLength) {
+                return rank <= 0 ? 0 : idf * rank * (k1 + 1) / (rank + minNorm + lengthNorm * pageLength);
+            }
+
+            @Override
+            public double upperBound(float maxRank) {
+                return maxRank <= 0 ? 0 : idf * maxRank * (k1 + 1) / (maxRank + minNorm);
+            }
+        };
+    }
+}
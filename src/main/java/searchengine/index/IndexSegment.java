@@ -0,0 +1,338 @@
+package searchengine.index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Открытый через {@link FileChannel#map} сегмент, записанный {@link SegmentWriter}.
+ * Словарь, списки вхождений и таблица страниц читаются прямо из отображённого файла,
+ * в куче хранятся только удалённые страницы и сайты (файл {@code .del} рядом с сегментом).
+ */
+public final class IndexSegment {
+
+    private final Path file;
+    private final ByteBuffer buffer;
+    private final int dictionaryOffset;
+    private final int termCount;
+    private final int pagesOffset;
+    private final int pageCount;
+    private final Map<Integer, Integer> pagesPerSite = new HashMap<>();
+    private final Map<Integer, Long> lengthPerSite = new HashMap<>();
+    private volatile int[] deletedPages = new int[0];
+    private volatile Set<Integer> deletedSites = Set.of();
+
+    private IndexSegment(Path file, ByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        if (buffer.getInt(0) != SegmentWriter.MAGIC || buffer.getInt(4) != SegmentWriter.VERSION) {
+            throw new IOException("Неизвестный формат сегмента " + file);
+        }
+        this.dictionaryOffset = buffer.getInt(8);
+        this.termCount = buffer.getInt(12);
+        this.pagesOffset = buffer.getInt(16);
+        this.pageCount = buffer.getInt(20);
+        for (int i = 0; i < pageCount; i++) {
+            pagesPerSite.merge(siteIdAt(i), 1, Integer::sum);
+            lengthPerSite.merge(siteIdAt(i), (long) pageLengthAt(i), Long::sum);
+        }
+    }
+
+    /**
+     * Записан ли файл в текущем формате {@link SegmentWriter}.
+     */
+    static boolean hasCurrentFormat(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(8);
+            channel.read(header, 0);
+            return header.position() == 8 && header.getInt(0) == SegmentWriter.MAGIC
+                    && header.getInt(4) == SegmentWriter.VERSION;
+        }
+    }
+
+    public static IndexSegment open(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        IndexSegment segment = new IndexSegment(file, buffer);
+        segment.readDeletes();
+        return segment;
+    }
+
+    public String name() {
+        return file.getFileName().toString();
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    public long sizeInBytes() {
+        return buffer.capacity();
+    }
+
+    public int termCount() {
+        return termCount;
+    }
+
+    public int pageCount() {
+        return pageCount;
+    }
+
+    public int livePageCount() {
+        int live = pageCount - deletedPages.length;
+        for (Integer siteId : deletedSites) {
+            live -= pagesPerSite.getOrDefault(siteId, 0);
+        }
+        return Math.max(0, live);
+    }
+
+    public double deletedRatio() {
+        return pageCount == 0 ? 1.0 : 1.0 - (double) livePageCount() / pageCount;
+    }
+
+    public Set<Integer> siteIds() {
+        return pagesPerSite.keySet();
+    }
+
+    public boolean isSiteDeleted(int siteId) {
+        return deletedSites.contains(siteId);
+    }
+
+    public boolean isPageDeleted(int pageId) {
+        return Arrays.binarySearch(deletedPages, pageId) >= 0;
+    }
+
+    public boolean isLive(int pageId, int siteId) {
+        return !isSiteDeleted(siteId) && !isPageDeleted(pageId);
+    }
+
+    /**
+     * Число страниц сайта в сегменте, включая удалённые: вместе с частотами лемм из списков вхождений
+     * даёт согласованную статистику для BM25.
+     */
+    public int pageCount(int siteId) {
+        return isSiteDeleted(siteId) ? 0 : pagesPerSite.getOrDefault(siteId, 0);
+    }
+
+    public long totalPageLength(int siteId) {
+        return isSiteDeleted(siteId) ? 0 : lengthPerSite.getOrDefault(siteId, 0L);
+    }
+
+    public int pageIdAt(int index) {
+        return buffer.getInt(pagesOffset + index * SegmentWriter.PAGE_ENTRY_BYTES);
+    }
+
+    public int siteIdAt(int index) {
+        return buffer.getInt(pagesOffset + index * SegmentWriter.PAGE_ENTRY_BYTES + 4);
+    }
+
+    public int pageLengthAt(int index) {
+        return buffer.getInt(pagesOffset + index * SegmentWriter.PAGE_ENTRY_BYTES + 8);
+    }
+
+    /**
+     * Длина страницы или 0, если её нет в сегменте.
+     */
+    public int pageLength(int pageId) {
+        int index = indexOfPage(pageId);
+        return index < 0 ? 0 : pageLengthAt(index);
+    }
+
+    public boolean containsPage(int pageId) {
+        return indexOfPage(pageId) >= 0;
+    }
+
+    public TermEntry termAt(int ordinal) {
+        int position = buffer.getInt(dictionaryOffset + ordinal * Integer.BYTES);
+        int length = Short.toUnsignedInt(buffer.getShort(position));
+        byte[] lemma = new byte[length];
+        buffer.get(position + Short.BYTES, lemma);
+        int fields = position + Short.BYTES + length;
+        return new TermEntry(new String(lemma, StandardCharsets.UTF_8),
+                buffer.getInt(fields), buffer.getInt(fields + 4),
+                buffer.getInt(fields + 8), buffer.getInt(fields + 12));
+    }
+
+    /**
+     * Все записи словаря с данной леммой, по одной на сайт.
+     */
+    public List<TermEntry> terms(String lemma) {
+        byte[] key = lemma.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = termCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compareLemma(middle, key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        List<TermEntry> entries = new ArrayList<>();
+        for (int ordinal = low; ordinal < termCount && compareLemma(ordinal, key) == 0; ordinal++) {
+            entries.add(termAt(ordinal));
+        }
+        return entries;
+    }
+
+    public PostingList postings(TermEntry term) {
+        return PostingList.wrap(buffer.slice(term.postingsOffset(), term.postingsLength()));
+    }
+
+    /**
+     * Помечает страницы удалёнными одной перезаписью файла {@code .del}.
+     */
+    public synchronized void deletePages(Collection<Integer> pageIds) throws IOException {
+        if (addDeletedPages(pageIds)) {
+            writeDeletes();
+        }
+    }
+
+    public synchronized void deleteSite(int siteId) throws IOException {
+        if (!pagesPerSite.containsKey(siteId) || deletedSites.contains(siteId)) {
+            return;
+        }
+        Set<Integer> sites = new HashSet<>(deletedSites);
+        sites.add(siteId);
+        deletedSites = Set.copyOf(sites);
+        writeDeletes();
+    }
+
+    /**
+     * Удалённые страницы на текущий момент. Массив не изменяется: удаление создаёт новый.
+     */
+    int[] deletedPages() {
+        return deletedPages;
+    }
+
+    /**
+     * Переносит удаления, сделанные в исходных сегментах во время слияния, на этот сегмент.
+     * Страницы из {@code deletedBeforeMerge} уже отброшены слиянием, а их id может принадлежать
+     * новой версии страницы, поэтому они пропускаются.
+     */
+    synchronized void applyDeletes(IndexSegment source, int[] deletedBeforeMerge) throws IOException {
+        List<Integer> deletedDuringMerge = new ArrayList<>();
+        for (int pageId : source.deletedPages) {
+            if (Arrays.binarySearch(deletedBeforeMerge, pageId) < 0) {
+                deletedDuringMerge.add(pageId);
+            }
+        }
+        boolean changed = addDeletedPages(deletedDuringMerge);
+        Set<Integer> sites = new HashSet<>(deletedSites);
+        for (Integer siteId : source.deletedSites) {
+            changed |= pagesPerSite.containsKey(siteId) && sites.add(siteId);
+        }
+        deletedSites = Set.copyOf(sites);
+        if (changed) {
+            writeDeletes();
+        }
+    }
+
+    void deleteFiles() throws IOException {
+        Files.deleteIfExists(deletesFile());
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Добавляет к удалённым страницы этого сегмента, которые ещё не удалены: массив копируется и сортируется один раз.
+     */
+    private boolean addDeletedPages(Collection<Integer> pageIds) {
+        int[] current = deletedPages;
+        int[] pages = Arrays.copyOf(current, current.length + pageIds.size());
+        int size = current.length;
+        for (int pageId : pageIds) {
+            if (containsPage(pageId) && Arrays.binarySearch(current, pageId) < 0) {
+                pages[size++] = pageId;
+            }
+        }
+        if (size == current.length) {
+            return false;
+        }
+        Arrays.sort(pages, 0, size);
+        int unique = 1;
+        for (int i = 1; i < size; i++) {
+            if (pages[i] != pages[unique - 1]) {
+                pages[unique++] = pages[i];
+            }
+        }
+        deletedPages = Arrays.copyOf(pages, unique);
+        return true;
+    }
+
+    private int indexOfPage(int pageId) {
+        int low = 0;
+        int high = pageCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int current = pageIdAt(middle);
+            if (current < pageId) {
+                low = middle + 1;
+            } else if (current > pageId) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private int compareLemma(int ordinal, byte[] key) {
+        int position = buffer.getInt(dictionaryOffset + ordinal * Integer.BYTES);
+        int length = Short.toUnsignedInt(buffer.getShort(position));
+        int start = position + Short.BYTES;
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int compare = Byte.compareUnsigned(buffer.get(start + i), key[i]);
+            if (compare != 0) {
+                return compare;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    private Path deletesFile() {
+        return file.resolveSibling(name().replace(".seg", ".del"));
+    }
+
+    private void readDeletes() throws IOException {
+        Path deletes = deletesFile();
+        if (!Files.exists(deletes)) {
+            return;
+        }
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(deletes));
+        int[] pages = new int[data.getInt()];
+        for (int i = 0; i < pages.length; i++) {
+            pages[i] = data.getInt();
+        }
+        Set<Integer> sites = new HashSet<>();
+        for (int i = data.getInt(); i > 0; i--) {
+            sites.add(data.getInt());
+        }
+        deletedPages = pages;
+        deletedSites = Set.copyOf(sites);
+    }
+
+    private void writeDeletes() throws IOException {
+        int[] pages = deletedPages;
+        Set<Integer> sites = deletedSites;
+        ByteBuffer data = ByteBuffer.allocate((2 + pages.length + sites.size()) * Integer.BYTES);
+        data.putInt(pages.length);
+        for (int pageId : pages) {
+            data.putInt(pageId);
+        }
+        data.putInt(sites.size());
+        sites.forEach(data::putInt);
+        Path temp = deletesFile().resolveSibling(deletesFile().getFileName() + ".tmp");
+        Files.write(temp, data.array());
+        Files.move(temp, deletesFile(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,629 @@
+package searchengine.index;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.app.IndexSetting;
+import searchengine.model.Index;
+import searchengine.model.Page;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Инвертированный индекс из неизменяемых сегментов на диске: лемма -> сжатый {@link PostingList} страниц.
+ * Сегменты отображаются в память через {@link IndexSegment}, поэтому после рестарта индекс доступен сразу,
+ * а куча не растёт вместе с корпусом. Записанные пачки страниц копятся в буфере в памяти и уходят
+ * на диск одним сегментом, когда в нём набирается {@code search-index.flush-pages} страниц или раз
+ * в {@code search-index.flush-interval}; до этого страницы поиску не видны. Удаления убирают страницы
+ * из буфера и помечаются в существующих сегментах, мелкие сегменты в фоне сливает {@link SegmentMergeScheduler}.
+ * Список сегментов неизменяем и заменяется целиком, чтение идёт без блокировок.
+ * <p>
+ * Зафиксированные в БД пачки записи передаются в {@link #apply}, который считает их по сайтам. Манифест
+ * хранит число пачек, попавших на диск; при старте {@link InvertedIndexLoader} сверяет его со счётчиком
+ * {@code site_stats.batches} и перестраивает разошедшиеся сайты из БД. Если запись индекса не удалась,
+ * индекс помечается неготовым, и поиск до перезапуска идёт через БД.
+ */
+@Slf4j
+@Component
+public class InvertedIndex {
+
+    private static final String MANIFEST = "segments.manifest";
+    private static final String BATCHES = "batches ";
+
+    private final Path directory;
+    private final SegmentMergePolicy mergePolicy;
+    private final Scorer scorer;
+    private final int flushPages;
+    private final Object bufferLock = new Object();
+    private final Map<Integer, BufferedPage> buffer = new HashMap<>();
+    private final Map<Integer, BufferedLemma> bufferedLemmas = new HashMap<>();
+    private final Map<Integer, Long> appliedBatches = new HashMap<>();
+    private Map<Integer, Long> durableBatches = Map.of();
+    private volatile List<IndexSegment> segments = List.of();
+    private volatile boolean ready;
+    private boolean merging;
+    private long generation;
+
+    public InvertedIndex(IndexSetting setting) {
+        this.directory = Path.of(setting.getDirectory());
+        this.mergePolicy = new SegmentMergePolicy(setting.getMergeFactor(), setting.getMaxSegmentBytes());
+        this.scorer = Scorer.of(setting.getScorer(), setting.getBm25K1(), setting.getBm25B());
+        this.flushPages = setting.getFlushPages();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Открывает индекс для поиска. В приложении вызывается {@link InvertedIndexLoader} после сверки с БД,
+     * в бенчмарках - после заполнения индекса синтетическим корпусом.
+     */
+    public void markReady() {
+        ready = true;
+        log.info("Инвертированный индекс готов: сегментов {}, страниц {}", segments.size(), pageCount());
+    }
+
+    public int pageCount() {
+        return segments.stream().mapToInt(IndexSegment::livePageCount).sum();
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Открывает сегменты из манифеста.
+     *
+     * @return {@code false}, если сохранённого индекса нет или он в устаревшем формате и его нужно построить из БД
+     */
+    synchronized boolean open() throws IOException {
+        Files.createDirectories(directory);
+        Path manifest = directory.resolve(MANIFEST);
+        if (!Files.exists(manifest)) {
+            return false;
+        }
+        List<String> lines = new ArrayList<>(Files.readAllLines(manifest));
+        generation = Long.parseLong(lines.get(0));
+        Map<Integer, Long> batches = new HashMap<>();
+        lines.removeIf(line -> {
+            if (!line.startsWith(BATCHES)) {
+                return false;
+            }
+            String[] fields = line.substring(BATCHES.length()).split(" ");
+            batches.put(Integer.parseInt(fields[0]), Long.parseLong(fields[1]));
+            return true;
+        });
+        for (String name : lines.subList(1, lines.size())) {
+            if (!IndexSegment.hasCurrentFormat(directory.resolve(name))) {
+                log.info("Сегменты индекса записаны в устаревшем формате, индекс будет перестроен");
+                for (String outdated : lines.subList(1, lines.size())) {
+                    Files.deleteIfExists(directory.resolve(outdated));
+                    Files.deleteIfExists(directory.resolve(outdated.replace(".seg", ".del")));
+                }
+                Files.delete(manifest);
+                return false;
+            }
+        }
+        List<IndexSegment> opened = new ArrayList<>();
+        for (String name : lines.subList(1, lines.size())) {
+            opened.add(IndexSegment.open(directory.resolve(name)));
+        }
+        segments = List.copyOf(opened);
+        synchronized (bufferLock) {
+            appliedBatches.putAll(batches);
+            durableBatches = Map.copyOf(batches);
+        }
+        return true;
+    }
+
+    /**
+     * Число пачек записи каждого сайта, попавших в сохранённый индекс.
+     */
+    Map<Integer, Long> indexedBatches() {
+        synchronized (bufferLock) {
+            return durableBatches;
+        }
+    }
+
+    /**
+     * Сайт перестроен из БД, в которой зафиксировано {@code batches} пачек его записи.
+     */
+    void markSynchronized(int siteId, long batches) throws IOException {
+        synchronized (bufferLock) {
+            appliedBatches.put(siteId, batches);
+            durableBatches = Map.copyOf(appliedBatches);
+            synchronized (this) {
+                replaceSegments(segments);
+            }
+        }
+    }
+
+    /**
+     * Помечает удалёнными все страницы сайта, чтобы записать его заново. В отличие от {@link #removeSite(int)},
+     * id сайта остаётся живым, и новые сегменты с ним видны поиску.
+     */
+    void removeSitePages(int siteId) {
+        List<Integer> pageIds = new ArrayList<>();
+        synchronized (bufferLock) {
+            buffer.forEach((pageId, page) -> {
+                if (page.siteId() == siteId) {
+                    pageIds.add(pageId);
+                }
+            });
+            for (IndexSegment segment : segments) {
+                for (int i = 0; i < segment.pageCount(); i++) {
+                    if (segment.siteIdAt(i) == siteId) {
+                        pageIds.add(segment.pageIdAt(i));
+                    }
+                }
+            }
+            removePages(pageIds);
+        }
+    }
+
+    /**
+     * Применяет зафиксированную в БД пачку записи сайта: удаляет прежние версии страниц и добавляет новые.
+     * Вызывается после коммита, поэтому ошибку некому вернуть: индекс помечается неготовым.
+     */
+    public void apply(int siteId, Collection<Integer> removedPageIds, Collection<Page> pages, Collection<Index> indexes) {
+        synchronized (bufferLock) {
+            try {
+                removePages(removedPageIds);
+                // пачка учитывается до index(): сброс буфера внутри него сохраняет счётчик вместе со страницами
+                appliedBatches.merge(siteId, 1L, Long::sum);
+                index(pages, indexes);
+            } catch (RuntimeException e) {
+                fail(e);
+            }
+        }
+    }
+
+    private void fail(RuntimeException e) {
+        ready = false;
+        log.error("Инвертированный индекс разошёлся с БД, поиск переключён на БД до перезапуска", e);
+    }
+
+    synchronized SegmentWriter newSegment() throws IOException {
+        Files.createDirectories(directory);
+        return new SegmentWriter(directory.resolve("segment_" + (++generation) + ".seg"));
+    }
+
+    synchronized void addSegment(SegmentWriter writer) throws IOException {
+        List<IndexSegment> updated = new ArrayList<>(segments);
+        updated.add(IndexSegment.open(writer.file()));
+        replaceSegments(updated);
+    }
+
+    /**
+     * Добавляет страницы в буфер; новая версия страницы заменяет буферизованную прежнюю.
+     * Буфер сбрасывается в сегмент, как только в нём набирается {@code search-index.flush-pages} страниц.
+     */
+    public void index(Collection<Page> pages, Collection<Index> indexes) {
+        if (pages.isEmpty()) {
+            return;
+        }
+        Map<Integer, List<Index>> byPage = new HashMap<>();
+        for (Index index : indexes) {
+            byPage.computeIfAbsent(index.getPage().getId(), id -> new ArrayList<>()).add(index);
+        }
+        synchronized (bufferLock) {
+            for (Page page : pages) {
+                List<Index> pageIndexes = byPage.getOrDefault(page.getId(), List.of());
+                int[] lemmaIds = new int[pageIndexes.size()];
+                float[] ranks = new float[pageIndexes.size()];
+                int length = 0;
+                for (int i = 0; i < lemmaIds.length; i++) {
+                    Index index = pageIndexes.get(i);
+                    lemmaIds[i] = index.getLemma().getId();
+                    ranks[i] = index.getRank();
+                    length += Math.round(index.getRank());
+                    bufferedLemmas.computeIfAbsent(lemmaIds[i], id ->
+                            new BufferedLemma(index.getLemma().getLemma(), index.getLemma().getSite().getId()));
+                }
+                buffer.put(page.getId(), new BufferedPage(page.getSite().getId(), length, lemmaIds, ranks));
+            }
+            if (buffer.size() >= flushPages) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Записывает буфер одним сегментом. При ошибке записи буфер сохраняется до следующей попытки.
+     */
+    public void flush() {
+        synchronized (bufferLock) {
+            if (buffer.isEmpty()) {
+                if (!durableBatches.equals(appliedBatches)) {
+                    writeBatches();
+                }
+                return;
+            }
+            Map<Integer, PostingBuilder> byLemma = new HashMap<>();
+            SegmentWriter writer = null;
+            try {
+                writer = newSegment();
+                for (Map.Entry<Integer, BufferedPage> entry : buffer.entrySet()) {
+                    int pageId = entry.getKey();
+                    BufferedPage page = entry.getValue();
+                    writer.addPage(pageId, page.siteId(), page.length());
+                    for (int i = 0; i < page.lemmaIds().length; i++) {
+                        byLemma.computeIfAbsent(page.lemmaIds()[i], id -> new PostingBuilder())
+                                .add(pageId, page.ranks()[i]);
+                    }
+                }
+                for (Map.Entry<Integer, PostingBuilder> entry : byLemma.entrySet()) {
+                    BufferedLemma lemma = bufferedLemmas.get(entry.getKey());
+                    writer.addTerm(lemma.lemma(), lemma.siteId(), entry.getKey(), entry.getValue().build());
+                }
+                writer.finish();
+                writer.close();
+                durableBatches = Map.copyOf(appliedBatches);
+                addSegment(writer);
+                log.info("Буфер индекса записан в сегмент {}: страниц {}", writer.file().getFileName(), buffer.size());
+                buffer.clear();
+                bufferedLemmas.clear();
+            } catch (IOException e) {
+                if (writer != null) {
+                    writer.abort();
+                }
+                UncheckedIOException failure = new UncheckedIOException("Не удалось записать сегмент индекса", e);
+                fail(failure);
+                throw failure;
+            }
+        }
+    }
+
+    private void writeBatches() {
+        durableBatches = Map.copyOf(appliedBatches);
+        synchronized (this) {
+            try {
+                replaceSegments(segments);
+            } catch (IOException e) {
+                UncheckedIOException failure = new UncheckedIOException("Не удалось записать манифест индекса", e);
+                fail(failure);
+                throw failure;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        flush();
+    }
+
+    /**
+     * Убирает страницы из буфера и помечает удалёнными в сегментах; файл удалений каждого сегмента
+     * перезаписывается один раз на вызов.
+     */
+    public void removePages(Collection<Integer> pageIds) {
+        if (pageIds.isEmpty()) {
+            return;
+        }
+        synchronized (bufferLock) {
+            pageIds.forEach(buffer::remove);
+            synchronized (this) {
+                try {
+                    for (IndexSegment segment : segments) {
+                        segment.deletePages(pageIds);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+    public void removeSite(int siteId) {
+        synchronized (bufferLock) {
+            buffer.values().removeIf(page -> page.siteId() == siteId);
+            appliedBatches.remove(siteId);
+            synchronized (this) {
+                try {
+                    for (IndexSegment segment : segments) {
+                        segment.deleteSite(siteId);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Блокировки всегда берутся в порядке: буфер, затем сам индекс.
+     */
+    public void clear() {
+        synchronized (bufferLock) {
+            buffer.clear();
+            bufferedLemmas.clear();
+            synchronized (this) {
+                List<IndexSegment> removed = segments;
+                try {
+                    replaceSegments(List.of());
+                    for (IndexSegment segment : removed) {
+                        segment.deleteFiles();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Сливает сегменты, выбранные {@link SegmentMergePolicy}. Тяжёлая часть выполняется без блокировки,
+     * удаления, пришедшие во время слияния, переносятся на новый сегмент при подмене.
+     */
+    public void maybeMerge() throws IOException {
+        List<IndexSegment> toMerge;
+        SegmentWriter writer;
+        Map<IndexSegment, int[]> deletedBeforeMerge = new HashMap<>();
+        synchronized (this) {
+            if (merging) {
+                return;
+            }
+            toMerge = mergePolicy.findMerge(segments);
+            if (toMerge.isEmpty()) {
+                return;
+            }
+            merging = true;
+            toMerge.forEach(segment -> deletedBeforeMerge.put(segment, segment.deletedPages()));
+            writer = newSegment();
+        }
+        try {
+            log.info("Слияние сегментов индекса: {}", toMerge.stream().map(IndexSegment::name).toList());
+            try {
+                SegmentMerger.merge(toMerge, writer);
+            } finally {
+                writer.close();
+            }
+            synchronized (this) {
+                if (!new HashSet<>(segments).containsAll(toMerge)) {
+                    writer.abort();
+                    return;
+                }
+                IndexSegment merged = IndexSegment.open(writer.file());
+                for (IndexSegment source : toMerge) {
+                    merged.applyDeletes(source, deletedBeforeMerge.get(source));
+                }
+                List<IndexSegment> updated = new ArrayList<>(segments);
+                updated.removeAll(toMerge);
+                if (merged.livePageCount() > 0) {
+                    updated.add(merged);
+                }
+                replaceSegments(updated);
+                if (merged.livePageCount() == 0) {
+                    merged.deleteFiles();
+                }
+                for (IndexSegment source : toMerge) {
+                    source.deleteFiles();
+                }
+            }
+        } catch (IOException e) {
+            writer.abort();
+            throw e;
+        } finally {
+            synchronized (this) {
+                merging = false;
+            }
+        }
+    }
+
+    /**
+     * Ищет страницы, содержащие все слова запроса, отдельно в каждом сайте, и отбирает {@code k} лучших.
+     * Слово - набор нормальных форм: страница содержит слово, если на ней есть любая из форм, поэтому
+     * списки вхождений форм одного слова объединяются, а его частота - сумма частот форм.
+     * Все вхождения одной страницы лежат в одном сегменте, поэтому пересечение выполняется посегментно.
+     * Слова, встречающиеся на доле страниц больше {@code maxDocFrequencyRatio}, не участвуют в пересечении.
+     * <p>
+     * Пересечение идёт по блокам (block-max): когда куча лучших страниц заполнена, для очередного кандидата
+     * по таблицам пропусков находятся блоки всех списков, и если сумма верхних границ оценок этих блоков ниже
+     * порога кучи, все они пропускаются без распаковки и пересечения. Число страниц в пропущенных блоках
+     * оценивается, поэтому {@link SearchHits#totalHits()} - точное число найденных, пока ничего не пропущено,
+     * и оценка в остальных случаях.
+     *
+     * @param siteIds сайты (активные поколения), в которых идёт поиск
+     */
+    public SearchHits search(List<Set<String>> words, Collection<Integer> siteIds, double maxDocFrequencyRatio, int k) {
+        TopScoreCollector collector = new TopScoreCollector(k);
+        if (words.isEmpty()) {
+            return collector.hits();
+        }
+        Set<String> lemmas = new HashSet<>();
+        words.forEach(lemmas::addAll);
+        List<IndexSegment> snapshot = segments;
+        Map<IndexSegment, Map<String, List<TermEntry>>> terms = new HashMap<>();
+        Map<Integer, Map<String, Integer>> docFrequency = new HashMap<>();
+        Map<String, Integer> searchedFrequency = new HashMap<>();
+        int searchedPages = 0;
+        long searchedLength = 0;
+        for (IndexSegment segment : snapshot) {
+            Map<String, List<TermEntry>> segmentTerms = new HashMap<>();
+            for (String lemma : lemmas) {
+                List<TermEntry> entries = segment.terms(lemma);
+                segmentTerms.put(lemma, entries);
+                for (TermEntry entry : entries) {
+                    if (!segment.isSiteDeleted(entry.siteId())) {
+                        int size = segment.postings(entry).size();
+                        docFrequency.computeIfAbsent(entry.siteId(), id -> new HashMap<>())
+                                .merge(lemma, size, Integer::sum);
+                        if (siteIds.contains(entry.siteId())) {
+                            searchedFrequency.merge(lemma, size, Integer::sum);
+                        }
+                    }
+                }
+            }
+            terms.put(segment, segmentTerms);
+            for (Integer site : segment.siteIds()) {
+                if (siteIds.contains(site)) {
+                    searchedPages += segment.pageCount(site);
+                    searchedLength += segment.totalPageLength(site);
+                }
+            }
+        }
+        double averageLength = searchedPages == 0 ? 0 : (double) searchedLength / searchedPages;
+        Scorer.TermWeight[] weights = new Scorer.TermWeight[words.size()];
+        for (int word = 0; word < words.size(); word++) {
+            int frequency = 0;
+            for (String lemma : words.get(word)) {
+                frequency += searchedFrequency.getOrDefault(lemma, 0);
+            }
+            weights[word] = scorer.weight(frequency, searchedPages, averageLength);
+        }
+        int totalPages = Math.max(1, snapshot.stream().mapToInt(IndexSegment::livePageCount).sum());
+        for (IndexSegment segment : snapshot) {
+            Map<String, List<TermEntry>> segmentTerms = terms.get(segment);
+            for (Integer site : segment.siteIds()) {
+                if (!siteIds.contains(site) || segment.isSiteDeleted(site)) {
+                    continue;
+                }
+                List<QueryTerm> query = new ArrayList<>();
+                for (int word = 0; word < words.size(); word++) {
+                    PostingList postings = null;
+                    for (String lemma : words.get(word)) {
+                        TermEntry entry = segmentTerms.get(lemma).stream()
+                                .filter(term -> term.siteId() == site)
+                                .findFirst()
+                                .orElse(null);
+                        if (entry != null) {
+                            postings = postings == null ? segment.postings(entry) : postings.union(segment.postings(entry));
+                        }
+                    }
+                    if (postings == null) {
+                        query = List.of();
+                        break;
+                    }
+                    int frequency = 0;
+                    for (String lemma : words.get(word)) {
+                        frequency += docFrequency.get(site).getOrDefault(lemma, 0);
+                    }
+                    if ((double) frequency / totalPages <= maxDocFrequencyRatio) {
+                        query.add(new QueryTerm(postings, weights[word]));
+                    }
+                }
+                intersect(segment, segment.pageCount(site), query, collector);
+            }
+        }
+        return collector.hits();
+    }
+
+    private void intersect(IndexSegment segment, int sitePages, List<QueryTerm> query, TopScoreCollector collector) {
+        if (query.isEmpty()) {
+            return;
+        }
+        List<QueryTerm> ordered = query.stream()
+                .sorted(Comparator.comparingInt(term -> term.postings().size()))
+                .toList();
+        PostingIterator[] iterators = new PostingIterator[ordered.size()];
+        Scorer.TermWeight[] weights = new Scorer.TermWeight[ordered.size()];
+        // доля страниц ведущего списка, попадающих в пересечение, пока ни одна не проверена:
+        // по размерам списков в предположении их независимости, затем - наблюдаемая
+        double independentRatio = 1;
+        for (int i = 0; i < iterators.length; i++) {
+            iterators[i] = ordered.get(i).postings().iterator();
+            weights[i] = ordered.get(i).weight();
+            if (i > 0) {
+                independentRatio *= Math.min(1, (double) ordered.get(i).postings().size() / Math.max(1, sitePages));
+            }
+        }
+        PostingIterator lead = iterators[0];
+        int skipped = 0;
+        int matched = 0;
+        int pageId = lead.nextDoc();
+        candidates:
+        while (pageId != PostingIterator.NO_MORE_DOCS) {
+            double threshold = collector.threshold();
+            if (threshold != Double.NEGATIVE_INFINITY) {
+                double upperBound = 0;
+                int blockEnd = Integer.MAX_VALUE;
+                for (int i = 0; i < iterators.length; i++) {
+                    int last = iterators[i].shallowAdvance(pageId);
+                    if (last == PostingIterator.NO_MORE_DOCS) {
+                        return;
+                    }
+                    upperBound += weights[i].upperBound(iterators[i].shallowMaxRank());
+                    blockEnd = Math.min(blockEnd, last);
+                }
+                if (upperBound < threshold) {
+                    int from = lead.ordinal();
+                    double ratio = from == skipped ? independentRatio : (double) matched / (from - skipped);
+                    pageId = lead.advance(blockEnd + 1);
+                    skipped += lead.ordinal() - from;
+                    collector.countEstimated((lead.ordinal() - from) * ratio);
+                    continue;
+                }
+            }
+            for (int i = 1; i < iterators.length; i++) {
+                int other = iterators[i].advance(pageId);
+                if (other > pageId) {
+                    pageId = lead.advance(other);
+                    continue candidates;
+                }
+            }
+            if (!segment.isPageDeleted(pageId)) {
+                matched++;
+                collector.count();
+                int pageLength = segment.pageLength(pageId);
+                double score = 0;
+                for (int i = 0; i < iterators.length; i++) {
+                    score += weights[i].score(iterators[i].rank(), pageLength);
+                }
+                collector.collect(pageId, score);
+            }
+            pageId = lead.nextDoc();
+        }
+    }
+
+    private record QueryTerm(PostingList postings, Scorer.TermWeight weight) {
+    }
+
+    private record BufferedPage(int siteId, int length, int[] lemmaIds, float[] ranks) {
+    }
+
+    private record BufferedLemma(String lemma, int siteId) {
+    }
+
+    /**
+     * Вхождения одной леммы из буфера: страницы приходят в произвольном порядке и сортируются при сборке.
+     */
+    private static final class PostingBuilder {
+        private long[] postings = new long[8];
+        private int size;
+
+        void add(int pageId, float rank) {
+            if (size == postings.length) {
+                postings = Arrays.copyOf(postings, size * 2);
+            }
+            postings[size++] = ((long) pageId << 32) | Integer.toUnsignedLong(Float.floatToRawIntBits(rank));
+        }
+
+        PostingList build() {
+            Arrays.sort(postings, 0, size);
+            int[] pageIds = new int[size];
+            float[] ranks = new float[size];
+            for (int i = 0; i < size; i++) {
+                pageIds[i] = (int) (postings[i] >>> 32);
+                ranks[i] = Float.intBitsToFloat((int) postings[i]);
+            }
+            return PostingList.of(pageIds, ranks, size);
+        }
+    }
+
+    private void replaceSegments(List<IndexSegment> updated) throws IOException {
+        StringBuilder manifest = new StringBuilder().append(generation).append('\n');
+        updated.forEach(segment -> manifest.append(segment.name()).append('\n'));
+        durableBatches.forEach((siteId, batches) ->
+                manifest.append(BATCHES).append(siteId).append(' ').append(batches).append('\n'));
+        Path temp = directory.resolve(MANIFEST + ".tmp");
+        Files.writeString(temp, manifest);
+        Files.move(temp, directory.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        segments = List.copyOf(updated);
+    }
+}
@@ -0,0 +1,160 @@
+package searchengine.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.repository.SiteStatsRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Открывает сегменты индекса при старте. Если сохранённого индекса нет,
+ * один раз строит его из таблиц {@code page}, {@code lemma} и {@code index}.
+ * Сохранённый индекс сверяется с БД по числу пачек записи каждого сайта: сайты, пачки которых
+ * не дошли до диска (сбой после коммита), перестраиваются из БД заново.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class InvertedIndexLoader {
+
+    private static final int FETCH_SIZE = 10_000;
+    private static final String PAGES = "SELECT p.id, p.site_id, COALESCE(SUM(i.rank), 0) FROM page p"
+            + " LEFT JOIN index i ON i.page_id = p.id";
+    private static final String LEMMAS = "SELECT id, site_id, lemma FROM lemma";
+    private static final String POSTINGS = "SELECT i.lemma_id, i.page_id, i.rank FROM index i";
+
+    private final InvertedIndex invertedIndex;
+    private final JdbcTemplate jdbcTemplate;
+    private final SiteStatsRepository siteStatsRepository;
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        try {
+            Map<Integer, Long> batches = siteStatsRepository.batches();
+            if (invertedIndex.open()) {
+                synchronize(batches);
+            } else {
+                log.info("Сохранённый индекс не найден, построение из БД");
+                build(PAGES + " GROUP BY p.id, p.site_id", LEMMAS,
+                        POSTINGS + " ORDER BY i.lemma_id, i.page_id");
+                for (Map.Entry<Integer, Long> site : batches.entrySet()) {
+                    invertedIndex.markSynchronized(site.getKey(), site.getValue());
+                }
+            }
+            invertedIndex.markReady();
+        } catch (IOException | UncheckedIOException e) {
+            log.error("Не удалось открыть инвертированный индекс, поиск работает через БД", e);
+        }
+    }
+
+    private void synchronize(Map<Integer, Long> batches) throws IOException {
+        Map<Integer, Long> indexed = invertedIndex.indexedBatches();
+        Set<Integer> siteIds = new HashSet<>(batches.keySet());
+        siteIds.addAll(indexed.keySet());
+        for (int siteId : siteIds) {
+            long expected = batches.getOrDefault(siteId, 0L);
+            long actual = indexed.getOrDefault(siteId, 0L);
+            if (expected == actual) {
+                continue;
+            }
+            log.warn("Индекс сайта {} разошёлся с БД (пачек {} из {}), перестроение", siteId, actual, expected);
+            invertedIndex.removeSitePages(siteId);
+            if (batches.containsKey(siteId)) {
+                build(PAGES + " WHERE p.site_id = ? GROUP BY p.id, p.site_id", LEMMAS + " WHERE site_id = ?",
+                        POSTINGS + " JOIN page p ON p.id = i.page_id WHERE p.site_id = ? ORDER BY i.lemma_id, i.page_id",
+                        siteId);
+            }
+            invertedIndex.markSynchronized(siteId, expected);
+        }
+    }
+
+    private void build(String pagesSql, String lemmasSql, String postingsSql, Object... args) throws IOException {
+        SegmentWriter writer = invertedIndex.newSegment();
+        try {
+            stream(pagesSql, rs -> writer.addPage(rs.getInt(1), rs.getInt(2), Math.round(rs.getFloat(3))), args);
+            Map<Integer, LemmaRow> lemmas = new HashMap<>();
+            stream(lemmasSql, rs -> lemmas.put(rs.getInt(1), new LemmaRow(rs.getInt(2), rs.getString(3))), args);
+            PostingAccumulator accumulator = new PostingAccumulator(writer, lemmas);
+            stream(postingsSql, rs -> accumulator.add(rs.getInt(1), rs.getInt(2), rs.getFloat(3)), args);
+            accumulator.flush();
+            writer.finish();
+            writer.close();
+        } catch (IOException | UncheckedIOException e) {
+            writer.abort();
+            throw e;
+        }
+        invertedIndex.addSegment(writer);
+    }
+
+    private void stream(String sql, RowCallbackHandler handler, Object... args) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setFetchSize(FETCH_SIZE);
+            for (int i = 0; i < args.length; i++) {
+                statement.setObject(i + 1, args[i]);
+            }
+            return statement;
+        }, handler);
+    }
+
+    private record LemmaRow(int siteId, String lemma) {
+    }
+
+    private static class PostingAccumulator {
+        private final SegmentWriter writer;
+        private final Map<Integer, LemmaRow> lemmas;
+        private int lemmaId = -1;
+        private int[] pageIds = new int[1024];
+        private float[] ranks = new float[1024];
+        private int size;
+
+        PostingAccumulator(SegmentWriter writer, Map<Integer, LemmaRow> lemmas) {
+            this.writer = writer;
+            this.lemmas = lemmas;
+        }
+
+        void add(int lemmaId, int pageId, float rank) {
+            if (lemmaId != this.lemmaId) {
+                flush();
+                this.lemmaId = lemmaId;
+            }
+            if (size > 0 && pageIds[size - 1] == pageId) {
+                return;
+            }
+            if (size == pageIds.length) {
+                pageIds = Arrays.copyOf(pageIds, size * 2);
+                ranks = Arrays.copyOf(ranks, size * 2);
+            }
+            pageIds[size] = pageId;
+            ranks[size++] = rank;
+        }
+
+        void flush() {
+            LemmaRow lemma = lemmas.get(lemmaId);
+            if (size > 0 && lemma != null) {
+                try {
+                    writer.addTerm(lemma.lemma(), lemma.siteId(), lemmaId, PostingList.of(pageIds, ranks, size));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package searchengine.index;
+
+/**
+ * Курсор по {@link PostingList}. Распаковывает не больше одного блока за раз,
+ * {@link #advance(int)} ищет нужный блок галопом по таблице пропусков.
+ * {@link #shallowAdvance(int)} находит блок только по таблице пропусков, без распаковки: его граница
+ * и максимальный rank позволяют пропустить блок целиком.
+ */
+public final class PostingIterator {
+
+    public static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    private final PostingList list;
+    private final int[] pageIds = new int[PostingList.BLOCK_SIZE];
+    private int block = -1;
+    private int blockLength;
+    private int position;
+    private int pageId = -1;
+    private int shallowBlock;
+
+    PostingIterator(PostingList list) {
+        this.list = list;
+    }
+
+    public int docId() {
+        return pageId;
+    }
+
+    public float rank() {
+        return list.rank(block * PostingList.BLOCK_SIZE + position);
+    }
+
+    /**
+     * Наибольший rank в блоке текущей страницы: ни одна страница блока не получит оценку выше.
+     */
+    public float blockMaxRank() {
+        return list.blockMaxRank(block);
+    }
+
+    public int nextDoc() {
+        if (pageId == NO_MORE_DOCS) {
+            return pageId;
+        }
+        if (block >= 0 && position + 1 < blockLength) {
+            return pageId = pageIds[++position];
+        }
+        if (block + 1 >= list.blockCount()) {
+            return pageId = NO_MORE_DOCS;
+        }
+        loadBlock(block + 1);
+        return pageId = pageIds[0];
+    }
+
+    /**
+     * Переходит к первой странице с id не меньше {@code target}.
+     */
+    public int advance(int target) {
+        if (pageId >= target) {
+            return pageId;
+        }
+        if (block < 0 || list.lastPageId(block) < target) {
+            int next = findBlock(target, block + 1);
+            if (next == list.blockCount()) {
+                return pageId = NO_MORE_DOCS;
+            }
+            loadBlock(next);
+        }
+        position = gallop(target, position);
+        return pageId = pageIds[position];
+    }
+
+    /**
+     * Находит блок, в котором может быть первая страница с id не меньше {@code target}, не распаковывая его
+     * и не сдвигая курсор. Как и в {@link #advance(int)}, {@code target} не должен убывать.
+     *
+     * @return последний id этого блока или {@link #NO_MORE_DOCS}, если таких страниц нет
+     */
+    int shallowAdvance(int target) {
+        shallowBlock = findBlock(target, Math.max(Math.max(block, 0), shallowBlock));
+        return shallowBlock == list.blockCount() ? NO_MORE_DOCS : list.lastPageId(shallowBlock);
+    }
+
+    /**
+     * Наибольший rank в блоке, найденном {@link #shallowAdvance(int)}.
+     */
+    float shallowMaxRank() {
+        return list.blockMaxRank(shallowBlock);
+    }
+
+    /**
+     * Номер текущей страницы в списке; после конца списка - его размер.
+     */
+    int ordinal() {
+        if (pageId == NO_MORE_DOCS) {
+            return list.size();
+        }
+        return block < 0 ? 0 : block * PostingList.BLOCK_SIZE + position;
+    }
+
+    private void loadBlock(int next) {
+        block = next;
+        blockLength = list.readBlock(next, pageIds);
+        position = 0;
+    }
+
+    private int findBlock(int target, int from) {
+        int blockCount = list.blockCount();
+        int low = from;
+        int bound = 1;
+        while (from + bound - 1 < blockCount && list.lastPageId(from + bound - 1) < target) {
+            low = from + bound;
+            bound <<= 1;
+        }
+        int high = Math.min(from + bound - 1, blockCount - 1);
+        if (low > high) {
+            return blockCount;
+        }
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (list.lastPageId(middle) < target) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return list.lastPageId(low) >= target ? low : blockCount;
+    }
+
+    private int gallop(int target, int from) {
+        int low = from;
+        int bound = 1;
+        while (from + bound - 1 < blockLength && pageIds[from + bound - 1] < target) {
+            low = from + bound;
+            bound <<= 1;
+        }
+        int high = Math.min(from + bound - 1, blockLength - 1);
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (pageIds[middle] < target) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,218 @@
+package searchengine.index;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Неизменяемый сжатый список вхождений леммы: возрастающие id страниц и их rank.
+ * <p>
+ * Формат буфера:
+ * <pre>
+ * int size, int blockCount
+ * blockCount * (int lastPageId, int docsOffset, float maxRank) - таблица пропусков по блокам из {@link #BLOCK_SIZE} страниц
+ * size * float rank
+ * varint-дельты id страниц, каждый блок кодируется от lastPageId предыдущего блока
+ * </pre>
+ * Таблица пропусков позволяет {@link PostingIterator#advance(int)} перескакивать целые блоки без распаковки,
+ * а максимальный rank блока даёт верхнюю оценку релевантности для отсечения при поиске лучших страниц.
+ */
+public final class PostingList {
+
+    static final int BLOCK_SIZE = 128;
+    private static final int HEADER_BYTES = 8;
+    private static final int SKIP_ENTRY_BYTES = 12;
+
+    public static final PostingList EMPTY = of(new int[0], new float[0], 0);
+
+    private final ByteBuffer buffer;
+    private final int size;
+    private final int blockCount;
+    private final int ranksOffset;
+    private final int docsOffset;
+
+    private PostingList(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.size = buffer.getInt(0);
+        this.blockCount = buffer.getInt(4);
+        this.ranksOffset = HEADER_BYTES + blockCount * SKIP_ENTRY_BYTES;
+        this.docsOffset = ranksOffset + size * Float.BYTES;
+    }
+
+    public static PostingList wrap(ByteBuffer buffer) {
+        return new PostingList(buffer.slice().asReadOnlyBuffer());
+    }
+
+    public static PostingList of(int[] pageIds, float[] ranks, int size) {
+        int blockCount = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int[] lastPageIds = new int[blockCount];
+        int[] offsets = new int[blockCount];
+        float[] maxRanks = new float[blockCount];
+        byte[] docs = new byte[Math.max(16, size * 2)];
+        int length = 0;
+        int previous = 0;
+        for (int i = 0; i < size; i++) {
+            if (i % BLOCK_SIZE == 0) {
+                offsets[i / BLOCK_SIZE] = length;
+            }
+            int pageId = pageIds[i];
+            if (pageId < 0 || (i > 0 && pageId <= previous)) {
+                throw new IllegalArgumentException("id страниц должны быть неотрицательными и строго возрастать: " + pageId);
+            }
+            if (docs.length - length < 5) {
+                docs = Arrays.copyOf(docs, docs.length * 2);
+            }
+            length = writeVarInt(docs, length, pageId - previous);
+            previous = pageId;
+            lastPageIds[i / BLOCK_SIZE] = pageId;
+            maxRanks[i / BLOCK_SIZE] = i % BLOCK_SIZE == 0 ? ranks[i] : Math.max(maxRanks[i / BLOCK_SIZE], ranks[i]);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + blockCount * SKIP_ENTRY_BYTES + size * Float.BYTES + length);
+        buffer.putInt(size).putInt(blockCount);
+        for (int b = 0; b < blockCount; b++) {
+            buffer.putInt(lastPageIds[b]).putInt(offsets[b]).putFloat(maxRanks[b]);
+        }
+        for (int i = 0; i < size; i++) {
+            buffer.putFloat(ranks[i]);
+        }
+        buffer.put(docs, 0, length);
+        buffer.flip();
+        return new PostingList(buffer.asReadOnlyBuffer());
+    }
+
+    /**
+     * Возвращает новый список, в котором к текущим вхождениям добавлены {@code pageIds}
+     * (при совпадении id побеждает новый rank), а страницы, подходящие под {@code removed}, выброшены.
+     * {@code pageIds} должны быть отсортированы по возрастанию.
+     */
+    public PostingList merge(int[] pageIds, float[] ranks, int count, IntPredicate removed) {
+        int[] mergedIds = new int[size + count];
+        float[] mergedRanks = new float[size + count];
+        int length = 0;
+        int j = 0;
+        PostingIterator iterator = iterator();
+        for (int pageId = iterator.nextDoc(); pageId != PostingIterator.NO_MORE_DOCS; pageId = iterator.nextDoc()) {
+            while (j < count && pageIds[j] < pageId) {
+                if (!removed.test(pageIds[j])) {
+                    mergedIds[length] = pageIds[j];
+                    mergedRanks[length++] = ranks[j];
+                }
+                j++;
+            }
+            if (j < count && pageIds[j] == pageId) {
+                continue;
+            }
+            if (!removed.test(pageId)) {
+                mergedIds[length] = pageId;
+                mergedRanks[length++] = iterator.rank();
+            }
+        }
+        for (; j < count; j++) {
+            if (!removed.test(pageIds[j])) {
+                mergedIds[length] = pageIds[j];
+                mergedRanks[length++] = ranks[j];
+            }
+        }
+        return of(mergedIds, mergedRanks, length);
+    }
+
+    /**
+     * Объединение двух списков: страницы обоих, для страницы из обоих списков ранги складываются.
+     */
+    public PostingList union(PostingList other) {
+        int[] unionIds = new int[size + other.size];
+        float[] unionRanks = new float[size + other.size];
+        int length = 0;
+        PostingIterator left = iterator();
+        PostingIterator right = other.iterator();
+        int leftId = left.nextDoc();
+        int rightId = right.nextDoc();
+        while (leftId != PostingIterator.NO_MORE_DOCS || rightId != PostingIterator.NO_MORE_DOCS) {
+            if (leftId < rightId) {
+                unionIds[length] = leftId;
+                unionRanks[length++] = left.rank();
+                leftId = left.nextDoc();
+            } else if (rightId < leftId) {
+                unionIds[length] = rightId;
+                unionRanks[length++] = right.rank();
+                rightId = right.nextDoc();
+            } else {
+                unionIds[length] = leftId;
+                unionRanks[length++] = left.rank() + right.rank();
+                leftId = left.nextDoc();
+                rightId = right.nextDoc();
+            }
+        }
+        return of(unionIds, unionRanks, length);
+    }
+
+    public PostingList without(IntPredicate removed) {
+        return merge(new int[0], new float[0], 0, removed);
+    }
+
+    public PostingIterator iterator() {
+        return new PostingIterator(this);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int sizeInBytes() {
+        return buffer.capacity();
+    }
+
+    ByteBuffer buffer() {
+        return buffer.duplicate();
+    }
+
+    int blockCount() {
+        return blockCount;
+    }
+
+    int lastPageId(int block) {
+        return buffer.getInt(HEADER_BYTES + block * SKIP_ENTRY_BYTES);
+    }
+
+    /**
+     * Наибольший rank среди страниц блока.
+     */
+    float blockMaxRank(int block) {
+        return buffer.getFloat(HEADER_BYTES + block * SKIP_ENTRY_BYTES + 8);
+    }
+
+    float rank(int ordinal) {
+        return buffer.getFloat(ranksOffset + ordinal * Float.BYTES);
+    }
+
+    /**
+     * Распаковывает блок в {@code target} и возвращает число id в нём.
+     */
+    int readBlock(int block, int[] target) {
+        int position = docsOffset + buffer.getInt(HEADER_BYTES + block * SKIP_ENTRY_BYTES + 4);
+        int length = Math.min(BLOCK_SIZE, size - block * BLOCK_SIZE);
+        int pageId = block == 0 ? 0 : lastPageId(block - 1);
+        for (int i = 0; i < length; i++) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(position++);
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            pageId += delta;
+            target[i] = pageId;
+        }
+        return length;
+    }
+
+    private static int writeVarInt(byte[] target, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            target[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        target[position++] = (byte) value;
+        return position;
+    }
+}
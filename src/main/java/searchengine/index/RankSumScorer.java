@@ -0,0 +1,24 @@
+package searchengine.index;
+
+/**
+ * Прежняя релевантность: сумма rank лемм запроса без учёта частоты леммы и длины страницы.
+ */
+public final class RankSumScorer implements Scorer {
+
+    private static final TermWeight RANK = new TermWeight() {
+        @Override
+        public double score(float rank, int pageLength) {
+            return rank;
+        }
+
+        @Override
+        public double upperBound(float maxRank) {
+            return maxRank;
+        }
+    };
+
+    @Override
+    public TermWeight weight(int docFrequency, int pageCount, double averagePageLength) {
+        return RANK;
+    }
+}
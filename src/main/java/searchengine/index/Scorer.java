@@ -0,0 +1,33 @@
+package searchengine.index;
+
+/**
+ * Формула релевантности страницы для леммы запроса. Оценка страницы - сумма оценок всех лемм запроса.
+ * Статистика корпуса ({@code docFrequency}, {@code pageCount}, {@code averagePageLength}) считается
+ * по сайтам, в которых идёт поиск, поэтому оценки страниц разных сайтов сравнимы.
+ */
+public interface Scorer {
+
+    TermWeight weight(int docFrequency, int pageCount, double averagePageLength);
+
+    /**
+     * Оценка одной леммы с зафиксированной статистикой корпуса.
+     */
+    interface TermWeight {
+
+        double score(float rank, int pageLength);
+
+        /**
+         * Верхняя граница {@link #score} для любой страницы, у которой rank не больше {@code maxRank}.
+         * Должна быть не меньше оценки при любой длине страницы, иначе отсечение потеряет результаты.
+         */
+        double upperBound(float maxRank);
+    }
+
+    static Scorer of(String name, double k1, double b) {
+        return switch (name) {
+            case "bm25" -> new Bm25Scorer(k1, b);
+            case "rank-sum" -> new RankSumScorer();
+            default -> throw new IllegalArgumentException("Неизвестная формула релевантности: " + name);
+        };
+    }
+}
@@ -0,0 +1,56 @@
+package searchengine.index;
+
+import java.util.Arrays;
+
+/**
+ * Найденные страницы с абсолютной релевантностью в виде примитивных массивов.
+ * При поиске лучших страниц здесь только отобранные, а {@link #totalHits()} - число всех найденных.
+ */
+public final class SearchHits {
+
+    private int[] pageIds = new int[16];
+    private double[] scores = new double[16];
+    private int size;
+    private int totalHits = -1;
+
+    public void add(int pageId, double score) {
+        if (size == pageIds.length) {
+            pageIds = Arrays.copyOf(pageIds, size * 2);
+            scores = Arrays.copyOf(scores, size * 2);
+        }
+        pageIds[size] = pageId;
+        scores[size++] = score;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int totalHits() {
+        return totalHits < 0 ? size : totalHits;
+    }
+
+    void setTotalHits(int totalHits) {
+        this.totalHits = totalHits;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int pageId(int i) {
+        return pageIds[i];
+    }
+
+    public double score(int i) {
+        return scores[i];
+    }
+
+    public double maxScore() {
+        double max = 0;
+        for (int i = 0; i < size; i++) {
+            max = Math.max(max, scores[i]);
+        }
+        return max;
+    }
+}
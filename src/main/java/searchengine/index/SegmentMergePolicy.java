@@ -0,0 +1,54 @@
+package searchengine.index;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Упрощённая ярусная политика слияния: сегменты группируются по порядку размера
+ * (ярус = log по основанию {@code mergeFactor} от размера относительно самого маленького),
+ * и как только в ярусе набирается {@code mergeFactor} сегментов, они сливаются в один.
+ * Сегменты, в которых удалена большая часть страниц, переписываются вне очереди.
+ */
+public class SegmentMergePolicy {
+
+    private static final double EXPUNGE_DELETES_RATIO = 0.5;
+
+    private final int mergeFactor;
+    private final long maxSegmentBytes;
+
+    public SegmentMergePolicy(int mergeFactor, long maxSegmentBytes) {
+        this.mergeFactor = Math.max(2, mergeFactor);
+        this.maxSegmentBytes = maxSegmentBytes;
+    }
+
+    public List<IndexSegment> findMerge(List<IndexSegment> segments) {
+        List<IndexSegment> candidates = segments.stream()
+                .filter(segment -> segment.sizeInBytes() < maxSegmentBytes)
+                .sorted(Comparator.comparingLong(IndexSegment::sizeInBytes))
+                .toList();
+        if (candidates.isEmpty()) {
+            return List.of();
+        }
+        for (IndexSegment segment : segments) {
+            if (segment.deletedRatio() >= EXPUNGE_DELETES_RATIO) {
+                return List.of(segment);
+            }
+        }
+        long floor = Math.max(1, candidates.get(0).sizeInBytes());
+        List<IndexSegment> tier = new ArrayList<>();
+        int currentTier = -1;
+        for (IndexSegment segment : candidates) {
+            int segmentTier = (int) (Math.log((double) segment.sizeInBytes() / floor) / Math.log(mergeFactor));
+            if (segmentTier != currentTier) {
+                tier.clear();
+                currentTier = segmentTier;
+            }
+            tier.add(segment);
+            if (tier.size() == mergeFactor) {
+                return List.copyOf(tier);
+            }
+        }
+        return List.of();
+    }
+}
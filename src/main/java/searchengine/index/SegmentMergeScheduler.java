@@ -0,0 +1,41 @@
+package searchengine.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SegmentMergeScheduler {
+
+    private final InvertedIndex invertedIndex;
+
+    @Scheduled(fixedDelayString = "${search-index.flush-interval:5000}")
+    public void flushBuffer() {
+        if (!invertedIndex.isReady()) {
+            return;
+        }
+        try {
+            invertedIndex.flush();
+        } catch (UncheckedIOException e) {
+            log.error("Ошибка при записи буфера индекса", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${search-index.merge-interval:30000}")
+    public void mergeSegments() {
+        if (!invertedIndex.isReady()) {
+            return;
+        }
+        try {
+            invertedIndex.maybeMerge();
+        } catch (IOException e) {
+            log.error("Ошибка при слиянии сегментов индекса", e);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package searchengine.index;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Сливает несколько сегментов в один, выбрасывая удалённые страницы и сайты.
+ * Словари сегментов отсортированы, поэтому термины обходятся k-way слиянием без загрузки словарей в память.
+ */
+final class SegmentMerger {
+
+    private static final Comparator<Cursor> ORDER = Comparator
+            .comparing((Cursor cursor) -> cursor.term.lemma())
+            .thenComparingInt(cursor -> cursor.term.siteId());
+
+    private SegmentMerger() {
+    }
+
+    static void merge(List<IndexSegment> segments, SegmentWriter writer) throws IOException {
+        for (IndexSegment segment : segments) {
+            for (int i = 0; i < segment.pageCount(); i++) {
+                int pageId = segment.pageIdAt(i);
+                int siteId = segment.siteIdAt(i);
+                if (segment.isLive(pageId, siteId)) {
+                    writer.addPage(pageId, siteId, segment.pageLengthAt(i));
+                }
+            }
+        }
+        PriorityQueue<Cursor> queue = new PriorityQueue<>(ORDER);
+        for (IndexSegment segment : segments) {
+            Cursor cursor = new Cursor(segment);
+            if (cursor.next()) {
+                queue.add(cursor);
+            }
+        }
+        while (!queue.isEmpty()) {
+            Cursor first = queue.poll();
+            TermEntry term = first.term;
+            PostingList merged = live(first.segment, term, PostingList.EMPTY);
+            while (!queue.isEmpty() && ORDER.compare(queue.peek(), first) == 0) {
+                Cursor same = queue.poll();
+                merged = live(same.segment, same.term, merged);
+                if (same.next()) {
+                    queue.add(same);
+                }
+            }
+            writer.addTerm(term.lemma(), term.siteId(), term.lemmaId(), merged);
+            if (first.next()) {
+                queue.add(first);
+            }
+        }
+        writer.finish();
+    }
+
+    private static PostingList live(IndexSegment segment, TermEntry term, PostingList target) {
+        if (segment.isSiteDeleted(term.siteId())) {
+            return target;
+        }
+        PostingList source = segment.postings(term);
+        int[] pageIds = new int[source.size()];
+        float[] ranks = new float[source.size()];
+        int count = 0;
+        PostingIterator iterator = source.iterator();
+        for (int pageId = iterator.nextDoc(); pageId != PostingIterator.NO_MORE_DOCS; pageId = iterator.nextDoc()) {
+            if (!segment.isPageDeleted(pageId)) {
+                pageIds[count] = pageId;
+                ranks[count++] = iterator.rank();
+            }
+        }
+        return target.merge(pageIds, ranks, count, pageId -> false);
+    }
+
+    private static final class Cursor {
+        private final IndexSegment segment;
+        private int ordinal = -1;
+        private TermEntry term;
+
+        Cursor(IndexSegment segment) {
+            this.segment = segment;
+        }
+
+        boolean next() {
+            if (++ordinal >= segment.termCount()) {
+                return false;
+            }
+            term = segment.termAt(ordinal);
+            return true;
+        }
+    }
+}
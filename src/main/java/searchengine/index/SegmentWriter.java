@@ -0,0 +1,155 @@
+package searchengine.index;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Пишет неизменяемый файл сегмента. Списки вхождений сбрасываются на диск сразу,
+ * в памяти до {@link #finish()} держатся только записи словаря и таблица страниц.
+ * <p>
+ * Формат файла:
+ * <pre>
+ * header: int magic, int version, int dictionaryOffset, int termCount, int pagesOffset, int pageCount, 8 байт резерв
+ * postings: буферы {@link PostingList} подряд
+ * dictionary: termCount * int смещение записи, затем записи (short длина, UTF-8 лемма, int siteId, int lemmaId,
+ *             int postingsOffset, int postingsLength), отсортированные по (лемма, siteId)
+ * pages: pageCount * (int pageId, int siteId, int length), отсортированные по pageId
+ * </pre>
+ * Длина страницы - число вхождений лемм на ней (сумма rank), по ней нормируется BM25.
+ */
+public final class SegmentWriter implements Closeable {
+
+    static final int MAGIC = 0x53454731;
+    static final int VERSION = 2;
+    static final int PAGE_ENTRY_BYTES = 3 * Integer.BYTES;
+    static final int HEADER_BYTES = 32;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final List<PendingTerm> terms = new ArrayList<>();
+    private int[] pageIds = new int[256];
+    private int[] siteIds = new int[256];
+    private int[] lengths = new int[256];
+    private int pageCount;
+    private long position = HEADER_BYTES;
+
+    public SegmentWriter(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    public long sizeInBytes() {
+        return position;
+    }
+
+    public void addTerm(String lemma, int siteId, int lemmaId, PostingList postings) throws IOException {
+        if (postings.size() == 0) {
+            return;
+        }
+        int offset = (int) position;
+        write(postings.buffer());
+        terms.add(new PendingTerm(lemma.getBytes(StandardCharsets.UTF_8), siteId, lemmaId, offset, postings.sizeInBytes()));
+    }
+
+    public void addPage(int pageId, int siteId, int length) {
+        if (pageCount == pageIds.length) {
+            pageIds = Arrays.copyOf(pageIds, pageCount * 2);
+            siteIds = Arrays.copyOf(siteIds, pageCount * 2);
+            lengths = Arrays.copyOf(lengths, pageCount * 2);
+        }
+        pageIds[pageCount] = pageId;
+        siteIds[pageCount] = siteId;
+        lengths[pageCount++] = length;
+    }
+
+    public void finish() throws IOException {
+        terms.sort(PendingTerm.ORDER);
+        int dictionaryOffset = (int) position;
+        ByteBuffer offsets = ByteBuffer.allocate(terms.size() * Integer.BYTES);
+        int entryPosition = dictionaryOffset + offsets.capacity();
+        for (PendingTerm term : terms) {
+            offsets.putInt(entryPosition);
+            entryPosition += term.entryBytes();
+        }
+        offsets.flip();
+        write(offsets);
+        for (PendingTerm term : terms) {
+            ByteBuffer entry = ByteBuffer.allocate(term.entryBytes());
+            entry.putShort((short) term.lemma().length).put(term.lemma())
+                    .putInt(term.siteId()).putInt(term.lemmaId())
+                    .putInt(term.postingsOffset()).putInt(term.postingsLength());
+            entry.flip();
+            write(entry);
+        }
+
+        int pagesOffset = (int) position;
+        long[] pages = new long[pageCount];
+        for (int i = 0; i < pageCount; i++) {
+            pages[i] = ((long) pageIds[i] << 32) | i;
+        }
+        Arrays.sort(pages);
+        ByteBuffer pageTable = ByteBuffer.allocate(pageCount * PAGE_ENTRY_BYTES);
+        for (long page : pages) {
+            int i = (int) page;
+            pageTable.putInt(pageIds[i]).putInt(siteIds[i]).putInt(lengths[i]);
+        }
+        pageTable.flip();
+        write(pageTable);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION)
+                .putInt(dictionaryOffset).putInt(terms.size())
+                .putInt(pagesOffset).putInt(pageCount);
+        header.clear();
+        channel.write(header, 0);
+        channel.force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public void abort() {
+        try {
+            close();
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        if (position + buffer.remaining() > Integer.MAX_VALUE) {
+            throw new IOException("Сегмент " + file + " превышает 2 ГБ");
+        }
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private record PendingTerm(byte[] lemma, int siteId, int lemmaId, int postingsOffset, int postingsLength) {
+
+        static final Comparator<PendingTerm> ORDER = (a, b) -> {
+            int compare = Arrays.compareUnsigned(a.lemma, b.lemma);
+            return compare != 0 ? compare : Integer.compare(a.siteId, b.siteId);
+        };
+
+        int entryBytes() {
+            return Short.BYTES + lemma.length + 4 * Integer.BYTES;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package searchengine.index;
+
+/**
+ * Запись словаря сегмента: лемма сайта и расположение её списка вхождений.
+ */
+public record TermEntry(
+
+        String lemma,
+
+        int siteId,
+
+        int lemmaId,
+
+        int postingsOffset,
+
+        int postingsLength
+) {
+
+}
@@ -0,0 +1,121 @@
+package searchengine.index;
+
+/**
+ * Куча на минимум из {@code k} лучших страниц, наполняемая по ходу поиска. {@link #threshold()} - оценка,
+ * которую нужно превзойти, чтобы попасть в кучу: страницы с меньшей верхней границей можно не оценивать.
+ * Число найденных страниц складывается из точно проверенных и оценки для пропущенных блоков.
+ * При равной оценке выше страница с меньшим id, поэтому порядок не зависит от порядка сегментов.
+ */
+final class TopScoreCollector {
+
+    private final int k;
+    private final int[] pageIds;
+    private final double[] scores;
+    private int size;
+    private int totalHits;
+    private double estimatedHits;
+
+    TopScoreCollector(int k) {
+        this.k = Math.max(0, k);
+        this.pageIds = new int[this.k];
+        this.scores = new double[this.k];
+    }
+
+    /**
+     * Учитывает найденную страницу в общем числе результатов, но не в куче.
+     */
+    void count() {
+        totalHits++;
+    }
+
+    /**
+     * Учитывает оценку числа результатов в пропущенных без проверки блоках.
+     */
+    void countEstimated(double hits) {
+        estimatedHits += hits;
+    }
+
+    /**
+     * Оценка, ниже которой страница в кучу не попадёт; пока куча не заполнена - минус бесконечность.
+     */
+    double threshold() {
+        if (k == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return size < k ? Double.NEGATIVE_INFINITY : scores[0];
+    }
+
+    void collect(int pageId, double score) {
+        if (size < k) {
+            pageIds[size] = pageId;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (k > 0 && better(pageId, score, 0)) {
+            pageIds[0] = pageId;
+            scores[0] = score;
+            siftDown(0, size);
+        }
+    }
+
+    /**
+     * Отобранные страницы по убыванию оценки; {@link SearchHits#totalHits()} - все найденные страницы,
+     * для пропущенных блоков - оценка.
+     * Сортирует кучу на месте, поэтому вызывается один раз в конце поиска.
+     */
+    SearchHits hits() {
+        for (int end = size - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+        SearchHits hits = new SearchHits();
+        for (int i = 0; i < size; i++) {
+            hits.add(pageIds[i], scores[i]);
+        }
+        hits.setTotalHits(totalHits + (int) Math.round(estimatedHits));
+        return hits;
+    }
+
+    private boolean better(int pageId, double score, int slot) {
+        int compare = Double.compare(score, scores[slot]);
+        return compare > 0 || (compare == 0 && pageId < pageIds[slot]);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!better(pageIds[parent], scores[parent], i)) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i, int size) {
+        while (true) {
+            int worst = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && better(pageIds[worst], scores[worst], left)) {
+                worst = left;
+            }
+            if (right < size && better(pageIds[worst], scores[worst], right)) {
+                worst = right;
+            }
+            if (worst == i) {
+                return;
+            }
+            swap(i, worst);
+            i = worst;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int pageId = pageIds[a];
+        pageIds[a] = pageIds[b];
+        pageIds[b] = pageId;
+        double score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+}
@@ -26,4 +26,10 @@ public class Index {
 
     @Column(name = "rank")
     private Float rank;
+
+    /**
+     * Вхождения леммы в тексте страницы в формате {@link searchengine.until.TokenPositions#toBytes()}.
+     */
+    @Column(name = "positions")
+    private byte[] positions;
 }
@@ -31,6 +31,24 @@ public class Page {
     @Column(name = "content")
     private String content;
 
+    @Column(name = "etag")
+    private String etag;
+
+    @Column(name = "last_modified")
+    private String lastModified;
+
+    @Column(name = "content_hash")
+    private String contentHash;
+
+    @Column(name = "title")
+    private String title;
+
+    /**
+     * Текст страницы без разметки, к нему относятся позиции из {@link Index#getPositions()}.
+     */
+    @Column(name = "text")
+    private String text;
+
     @OneToMany(mappedBy = "page",cascade = CascadeType.REMOVE,fetch = FetchType.LAZY)
     private List<Index> indexList;
 
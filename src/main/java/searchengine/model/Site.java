@@ -35,6 +35,13 @@ public class Site {
     @Column(name = "name")
     private String name;
 
+    /**
+     * Поколение, по которому сейчас идёт поиск. Полная переиндексация строит новое поколение
+     * неактивным и переключает его в {@link searchengine.services.SiteGenerations}.
+     */
+    @Column(name = "active")
+    private boolean active = true;
+
     @OneToMany(mappedBy = "site",cascade = CascadeType.REMOVE, fetch = FetchType.LAZY)
     private List<Page> page;
 
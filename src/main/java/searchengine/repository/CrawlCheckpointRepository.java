@@ -0,0 +1,63 @@
+package searchengine.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import searchengine.until.CrawlCheckpoint;
+import searchengine.until.CrawlCheckpointStore;
+
+import java.util.List;
+
+/**
+ * Сохранённые состояния обхода в таблице {@code crawl_checkpoint}: одна строка на поколение сайта,
+ * каждый снимок перезаписывает предыдущий. Строка удаляется, когда обход завершён.
+ */
+@Repository
+@RequiredArgsConstructor
+public class CrawlCheckpointRepository {
+
+    private static final String SAVE = """
+            INSERT INTO crawl_checkpoint (site_id, frontier, visited, saved_at) VALUES (?, ?, ?, now())
+            ON CONFLICT (site_id) DO UPDATE SET frontier = EXCLUDED.frontier, visited = EXCLUDED.visited,
+                saved_at = EXCLUDED.saved_at
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CrawlCheckpointStore store(int siteId) {
+        return new CrawlCheckpointStore() {
+            @Override
+            public CrawlCheckpoint load() {
+                List<CrawlCheckpoint> found = jdbcTemplate.query(
+                        "SELECT frontier, visited FROM crawl_checkpoint WHERE site_id = ?",
+                        (rs, rowNum) -> CrawlCheckpoint.fromBytes(rs.getBytes(1), rs.getBytes(2)), siteId);
+                return found.isEmpty() ? null : found.get(0);
+            }
+
+            @Override
+            public void save(CrawlCheckpoint checkpoint) {
+                jdbcTemplate.update(SAVE, siteId, checkpoint.frontierBytes(), checkpoint.visitedBytes());
+            }
+
+            @Override
+            public void clear() {
+                delete(siteId);
+            }
+        };
+    }
+
+    /**
+     * Последнее поколение сайта с незавершённым обходом или {@code null}.
+     */
+    public Integer findResumable(String url) {
+        List<Integer> found = jdbcTemplate.queryForList("""
+                SELECT s.id FROM crawl_checkpoint c JOIN site s ON s.id = c.site_id
+                WHERE s.url = ? ORDER BY s.id DESC LIMIT 1
+                """, Integer.class, url);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    public void delete(int siteId) {
+        jdbcTemplate.update("DELETE FROM crawl_checkpoint WHERE site_id = ?", siteId);
+    }
+}
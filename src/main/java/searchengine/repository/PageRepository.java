@@ -1,18 +1,25 @@
 package searchengine.repository;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import searchengine.model.Page;
+import searchengine.model.Site;
+
+import java.util.Collection;
+import java.util.List;
 
 @Repository
 public interface PageRepository extends JpaRepository<Page,Integer> {
 
-    boolean existsByPath (String path);
-
-    @Query("SELECT count(p) FROM Page p WHERE p.site.id = :id")
-    int countPagesToSite(@Param("id") Integer id);
+    /**
+     * Страницы выдачи вместе с сайтом одним запросом.
+     */
+    @EntityGraph(attributePaths = "site")
+    List<Page> findAllWithSiteByIdIn(Collection<Integer> ids);
 
-    void deletePageByPath(String path);
+    @Query("SELECT p.id FROM Page p WHERE p.site = :site AND p.path = :path")
+    List<Integer> findIdsBySiteAndPath(@Param("site") Site site, @Param("path") String path);
 }
@@ -0,0 +1,102 @@
+package searchengine.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import searchengine.dto.search.RankedPages;
+
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Поиск одним SQL-запросом, пока инвертированный индекс не готов. Разрешение лемм, отсев слишком частых слов,
+ * пересечение (страница содержит хотя бы одну форму каждого оставшегося слова своего сайта) и сумма rank
+ * выполняются в БД, наружу возвращаются только id и релевантность лучших страниц и общее число найденных.
+ * Семантика та же, что у {@code InvertedIndex.search}: слово запроса - набор его нормальных форм,
+ * сайт участвует, только если на нём есть хотя бы одна форма каждого слова,
+ * частота слова - сумма частот его форм.
+ */
+@Repository
+@RequiredArgsConstructor
+public class SearchRepository {
+
+    private static final String SEARCH = """
+            WITH terms AS (
+                SELECT l.id, l.site_id, l.frequency, q.word
+                FROM unnest(?::varchar[], ?::int[]) AS q(lemma, word)
+                JOIN lemma l ON l.lemma = q.lemma
+                JOIN site s ON s.id = l.site_id
+                WHERE s.active AND (?::int IS NULL OR l.site_id = ?::int)
+            ), sites AS (
+                SELECT site_id FROM terms GROUP BY site_id HAVING count(DISTINCT word) = ?
+            ), words AS (
+                SELECT t.site_id, t.word
+                FROM terms t
+                JOIN sites USING (site_id)
+                GROUP BY t.site_id, t.word
+                HAVING sum(t.frequency) <= ?
+            ), kept AS (
+                SELECT t.id, t.site_id, t.word
+                FROM terms t
+                JOIN words USING (site_id, word)
+            ), required AS (
+                SELECT site_id, count(*) AS n FROM words GROUP BY site_id
+            ), hits AS (
+                SELECT i.page_id, sum(i.rank) AS score
+                FROM kept k
+                JOIN index i ON i.lemma_id = k.id
+                JOIN required r ON r.site_id = k.site_id
+                GROUP BY i.page_id, r.n
+                HAVING count(DISTINCT k.word) = r.n
+            )
+            SELECT page_id, score, count(*) OVER () AS total
+            FROM hits
+            ORDER BY score DESC, page_id
+            LIMIT ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * @param words           слова запроса, каждое - набор нормальных форм
+     * @param siteId          сайт поиска или {@code null} для всех активных сайтов
+     * @param maxDocFrequency слова, встречающиеся на большем числе страниц, не участвуют в пересечении
+     * @param limit           сколько лучших страниц вернуть
+     */
+    public RankedPages search(List<Set<String>> words, Integer siteId, double maxDocFrequency, int limit) {
+        if (words.isEmpty()) {
+            return RankedPages.EMPTY;
+        }
+        List<String> lemmas = new ArrayList<>();
+        List<Integer> wordNumbers = new ArrayList<>();
+        for (int word = 0; word < words.size(); word++) {
+            for (String lemma : words.get(word)) {
+                lemmas.add(lemma);
+                wordNumbers.add(word);
+            }
+        }
+        int[] pageIds = new int[limit];
+        double[] scores = new double[limit];
+        int[] counts = new int[2];
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SEARCH);
+            statement.setArray(1, connection.createArrayOf("varchar", lemmas.toArray()));
+            statement.setArray(2, connection.createArrayOf("integer", wordNumbers.toArray()));
+            statement.setObject(3, siteId, Types.INTEGER);
+            statement.setObject(4, siteId, Types.INTEGER);
+            statement.setInt(5, words.size());
+            statement.setDouble(6, maxDocFrequency);
+            statement.setInt(7, limit);
+            return statement;
+        }, rs -> {
+            pageIds[counts[0]] = rs.getInt(1);
+            scores[counts[0]++] = rs.getDouble(2);
+            counts[1] = rs.getInt(3);
+        });
+        return new RankedPages(Arrays.copyOf(pageIds, counts[0]), Arrays.copyOf(scores, counts[0]), counts[1]);
+    }
+}
@@ -1,13 +1,25 @@
 package searchengine.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import searchengine.model.Site;
 
+import java.util.List;
+
 @Repository
 public interface SiteRepository extends JpaRepository<Site, Integer> {
 
-    Site findByUrl(String url);
+    Site findByUrlAndActiveTrue(String url);
+
+    List<Site> findByUrlAndActiveFalse(String url);
+
+    List<Site> findByActiveTrue();
+
+    Site findFirstByUrlOrderByIdDesc(String url);
+
+    @Query("SELECT s.id FROM Site s WHERE s.active = true")
+    List<Integer> findActiveIds();
 
     boolean existsByUrl (String url);
 }
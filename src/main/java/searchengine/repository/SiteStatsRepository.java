@@ -0,0 +1,53 @@
+package searchengine.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Счётчики сайтов в таблице {@code site_stats}: число страниц, лемм и записей index.
+ * Меняются разностями в транзакции записи, поэтому всегда согласованы с таблицами,
+ * а чтение всей статистики - по одной строке на сайт. Каждое изменение увеличивает {@code batches} -
+ * число зафиксированных пачек записи сайта, с которым при старте сверяется инвертированный индекс.
+ */
+@Repository
+@RequiredArgsConstructor
+public class SiteStatsRepository {
+
+    private static final String ADD = """
+            INSERT INTO site_stats (site_id, pages, lemmas, indexes, batches) VALUES (?, ?, ?, ?, 1)
+            ON CONFLICT (site_id) DO UPDATE SET pages = site_stats.pages + EXCLUDED.pages,
+                lemmas = site_stats.lemmas + EXCLUDED.lemmas, indexes = site_stats.indexes + EXCLUDED.indexes,
+                batches = site_stats.batches + 1
+            """;
+
+    public interface SiteStatsHandler {
+        void accept(int siteId, long pages, long lemmas, long indexes);
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void add(int siteId, long pages, long lemmas, long indexes) {
+        jdbcTemplate.update(ADD, siteId, pages, lemmas, indexes);
+    }
+
+    public void delete(int siteId) {
+        jdbcTemplate.update("DELETE FROM site_stats WHERE site_id = ?", siteId);
+    }
+
+    public Map<Integer, Long> batches() {
+        Map<Integer, Long> batches = new HashMap<>();
+        jdbcTemplate.query("SELECT site_id, batches FROM site_stats", (RowCallbackHandler) rs ->
+                batches.put(rs.getInt(1), rs.getLong(2)));
+        return batches;
+    }
+
+    public void forEach(SiteStatsHandler handler) {
+        jdbcTemplate.query("SELECT site_id, pages, lemmas, indexes FROM site_stats", (RowCallbackHandler) rs ->
+                handler.accept(rs.getInt(1), rs.getLong(2), rs.getLong(3), rs.getLong(4)));
+    }
+}
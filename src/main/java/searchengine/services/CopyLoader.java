@@ -0,0 +1,156 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import searchengine.model.Index;
+import searchengine.model.Lemma;
+import searchengine.model.Page;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Массовая запись строк через протокол COPY PostgreSQL в текущей транзакции.
+ * id страниц и лемм выделяются заранее из их последовательностей одним запросом,
+ * поэтому Hibernate и IDENTITY в записи не участвуют, а строки уходят на сервер
+ * кусками по {@link #CHUNK_CHARS} символов CSV.
+ */
+@Component
+@RequiredArgsConstructor
+public class CopyLoader {
+
+    private static final int CHUNK_CHARS = 64 * 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Выделяет {@code count} значений из последовательности столбца {@code id} таблицы.
+     */
+    public List<Integer> allocateIds(String table, int count) {
+        if (count == 0) {
+            return List.of();
+        }
+        return jdbcTemplate.queryForList("SELECT nextval(pg_get_serial_sequence(?, 'id')) FROM generate_series(1, ?)",
+                Integer.class, table, count);
+    }
+
+    public void copyPages(Collection<Page> pages) {
+        copy("COPY page (id, site_id, path, code, content, etag, last_modified, content_hash, title, text) FROM STDIN WITH (FORMAT csv)",
+                pages, (page, row) -> row
+                        .number(page.getId()).number(page.getSite().getId()).text(page.getPath())
+                        .number(page.getCode()).text(page.getContent()).text(page.getEtag())
+                        .text(page.getLastModified()).text(page.getContentHash())
+                        .text(page.getTitle()).text(page.getText()));
+    }
+
+    public void copyLemmas(Collection<Lemma> lemmas) {
+        copy("COPY lemma (id, site_id, lemma, frequency) FROM STDIN WITH (FORMAT csv)",
+                lemmas, (lemma, row) -> row
+                        .number(lemma.getId()).number(lemma.getSite().getId())
+                        .text(lemma.getLemma()).number(lemma.getFrequency()));
+    }
+
+    public void copyIndexes(Collection<Index> indexes) {
+        copy("COPY index (page_id, lemma_id, rank, positions) FROM STDIN WITH (FORMAT csv)",
+                indexes, (index, row) -> row
+                        .number(index.getPage().getId()).number(index.getLemma().getId()).number(index.getRank())
+                        .bytes(index.getPositions()));
+    }
+
+    private <T> void copy(String sql, Collection<T> rows, BiConsumer<T, CsvRow> encoder) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(sql);
+            try {
+                CsvRow row = new CsvRow();
+                for (T value : rows) {
+                    encoder.accept(value, row);
+                    row.end();
+                    if (row.buffer.length() >= CHUNK_CHARS) {
+                        row.flushTo(copyIn);
+                    }
+                }
+                row.flushTo(copyIn);
+                return copyIn.endCopy();
+            } finally {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+            }
+        });
+    }
+
+    /**
+     * CSV-строка для COPY: пустое поле без кавычек - NULL, текст всегда в кавычках.
+     */
+    private static final class CsvRow {
+
+        private final StringBuilder buffer = new StringBuilder(CHUNK_CHARS * 2);
+        private boolean first = true;
+
+        CsvRow number(Number value) {
+            separator();
+            if (value != null) {
+                buffer.append(value);
+            }
+            return this;
+        }
+
+        CsvRow text(String value) {
+            separator();
+            if (value != null) {
+                buffer.append('"');
+                for (int i = 0; i < value.length(); i++) {
+                    char c = value.charAt(i);
+                    if (c == '"') {
+                        buffer.append('"');
+                    }
+                    if (c != '\0') {
+                        buffer.append(c);
+                    }
+                }
+                buffer.append('"');
+            }
+            return this;
+        }
+
+        /**
+         * bytea в шестнадцатеричном виде {@code \x...}.
+         */
+        CsvRow bytes(byte[] value) {
+            separator();
+            if (value != null) {
+                buffer.append("\\x").append(HexFormat.of().formatHex(value));
+            }
+            return this;
+        }
+
+        void end() {
+            buffer.append('\n');
+            first = true;
+        }
+
+        void flushTo(CopyIn copyIn) throws SQLException {
+            byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+            buffer.setLength(0);
+        }
+
+        private void separator() {
+            if (!first) {
+                buffer.append(',');
+            }
+            first = false;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import searchengine.repository.SiteStatsRepository;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Число страниц, лемм и записей index каждого сайта. Источник - таблица {@code site_stats}, которую
+ * {@link PageWriter} меняет разностями в своей транзакции записи через {@link #record}, а в памяти
+ * держится её копия: при старте читается одна строка на сайт, дальше разность применяется после коммита.
+ * Поэтому поиску и статистике не нужны агрегирующие запросы ни при старте, ни при запросе.
+ * Число страниц с леммой хранит {@code lemma.frequency}: его меняет тот же {@link PageWriter}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CorpusStatistics {
+
+    private final SiteStatsRepository siteStatsRepository;
+    private final Map<Integer, LongAdder> pagesPerSite = new ConcurrentHashMap<>();
+    private final LongAdder totalPages = new LongAdder();
+    private final Map<Integer, LongAdder> lemmasPerSite = new ConcurrentHashMap<>();
+    private final Map<Integer, LongAdder> indexesPerSite = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        siteStatsRepository.forEach(this::add);
+        log.info("Статистика корпуса загружена: сайтов {}, страниц {}", pagesPerSite.size(), totalPages.sum());
+    }
+
+    /**
+     * Записывает изменение счётчиков сайта в {@code site_stats} в текущей транзакции;
+     * копия в памяти меняется после коммита. Вызывается один раз на пачку записи, даже с нулевыми
+     * разностями: по числу вызовов инвертированный индекс проверяет, что не пропустил ни одной пачки.
+     */
+    public void record(int siteId, long pages, long lemmas, long indexes) {
+        siteStatsRepository.add(siteId, pages, lemmas, indexes);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            add(siteId, pages, lemmas, indexes);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                add(siteId, pages, lemmas, indexes);
+            }
+        });
+    }
+
+    /**
+     * Меняет только копию в памяти.
+     */
+    public void addPages(int siteId, long count) {
+        add(siteId, count, 0, 0);
+    }
+
+    public void removeSite(int siteId) {
+        siteStatsRepository.delete(siteId);
+        lemmasPerSite.remove(siteId);
+        indexesPerSite.remove(siteId);
+        LongAdder pages = pagesPerSite.remove(siteId);
+        if (pages != null) {
+            totalPages.add(-pages.sum());
+        }
+    }
+
+    public long pageCount(int siteId) {
+        return count(pagesPerSite, siteId);
+    }
+
+    public long lemmaCount(int siteId) {
+        return count(lemmasPerSite, siteId);
+    }
+
+    public long indexCount(int siteId) {
+        return count(indexesPerSite, siteId);
+    }
+
+    /**
+     * Все страницы в БД, включая ещё не активированные и удаляемые поколения сайтов.
+     */
+    public long totalPages() {
+        return totalPages.sum();
+    }
+
+    private void add(int siteId, long pages, long lemmas, long indexes) {
+        if (pages != 0) {
+            pagesPerSite.computeIfAbsent(siteId, id -> new LongAdder()).add(pages);
+            totalPages.add(pages);
+        }
+        if (lemmas != 0) {
+            lemmasPerSite.computeIfAbsent(siteId, id -> new LongAdder()).add(lemmas);
+        }
+        if (indexes != 0) {
+            indexesPerSite.computeIfAbsent(siteId, id -> new LongAdder()).add(indexes);
+        }
+    }
+
+    private static long count(Map<Integer, LongAdder> counters, int siteId) {
+        LongAdder counter = counters.get(siteId);
+        return counter == null ? 0 : counter.sum();
+    }
+}
@@ -0,0 +1,211 @@
+package searchengine.services;
+
+import io.micrometer.core.instrument.Gauge;
+import lombok.extern.slf4j.Slf4j;
+import searchengine.config.app.PipelineSetting;
+import searchengine.config.metrics.SearchEngineMetrics;
+import searchengine.model.Lemma;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.until.LemmaFinder;
+import searchengine.until.SiteProgress;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Потоковая индексация одного сайта: обход -> лемматизация -> пакетное сохранение.
+ * Очереди между этапами ограничены, поэтому обходчик ждёт, пока сохранение не догонит его,
+ * а страница освобождается из памяти сразу после записи своей пачки.
+ * <p>
+ * Каждый поток лемматизации собирает свою {@link LemmatizedBatch} и складывает частоты лемм локально,
+ * в очередь сохранения уходят готовые пачки. Неполная пачка отправляется, если новых страниц
+ * нет дольше {@link #FLUSH_MILLIS}, чтобы медленный обход не задерживал запись.
+ * Счётчики страниц ведёт {@link SiteProgress}, там же виден размер очереди скачанных страниц;
+ * время лемматизации страниц и заполнение очередей видны в {@link SearchEngineMetrics}.
+ * О каждой записанной странице после фиксации её пачки сообщается слушателю {@link #onWritten(Consumer)}.
+ * После первой ошибки страницы больше не лемматизируются и не сохраняются, а слушатель {@link #onFailure(Runnable)}
+ * может остановить обход сайта.
+ */
+@Slf4j
+public class IndexingPipeline {
+
+    private static final long FLUSH_MILLIS = 500;
+    private static final Page END_OF_PAGES = new Page();
+    private static final LemmatizedBatch END_OF_BATCHES = new LemmatizedBatch(0);
+
+    private final Site site;
+    private final PageWriter pageWriter;
+    private final int batchSize;
+    private final int lemmatizerCount;
+    private final BlockingQueue<Page> fetched;
+    private final BlockingQueue<LemmatizedBatch> lemmatized;
+    private final ExecutorService lemmatizers;
+    private final Thread persister;
+    private final Map<String, Lemma> siteLemmas;
+    private final SearchEngineMetrics metrics;
+    private final SiteProgress progress;
+    private List<Gauge> queueGauges = List.of();
+    private Consumer<Page> written = page -> {
+    };
+    private Runnable failed = () -> {
+    };
+    private volatile Exception failure;
+
+    public IndexingPipeline(Site site, PageWriter pageWriter, PipelineSetting setting, SearchEngineMetrics metrics,
+                            SiteProgress progress) {
+        this(site, pageWriter, setting, metrics, progress, new HashMap<>());
+    }
+
+    /**
+     * @param siteLemmas уже сохранённые леммы сайта при повторной индексации
+     */
+    public IndexingPipeline(Site site, PageWriter pageWriter, PipelineSetting setting, SearchEngineMetrics metrics,
+                            SiteProgress progress, Map<String, Lemma> siteLemmas) {
+        this.site = site;
+        this.metrics = metrics;
+        this.progress = progress;
+        this.siteLemmas = siteLemmas;
+        this.pageWriter = pageWriter;
+        this.batchSize = setting.getBatchSize();
+        this.lemmatizerCount = setting.getLemmatizers();
+        this.fetched = new ArrayBlockingQueue<>(setting.getQueueCapacity());
+        this.lemmatized = new ArrayBlockingQueue<>(Math.max(lemmatizerCount, setting.getQueueCapacity() / batchSize));
+        this.lemmatizers = Executors.newFixedThreadPool(lemmatizerCount);
+        this.persister = new Thread(this::persist, "Persister-" + site.getName());
+    }
+
+    /**
+     * Задаётся до {@link #start()}; слушатель вызывается из потока сохранения.
+     */
+    public void onWritten(Consumer<Page> listener) {
+        this.written = listener;
+    }
+
+    /**
+     * Задаётся до {@link #start()}; слушатель вызывается один раз, из потока, в котором произошла ошибка.
+     */
+    public void onFailure(Runnable listener) {
+        this.failed = listener;
+    }
+
+    public void start() {
+        queueGauges = List.of(
+                metrics.queueGauge(site.getUrl(), "fetched", fetched::size),
+                metrics.queueGauge(site.getUrl(), "lemmatized", lemmatized::size));
+        progress.trackQueue(fetched::size);
+        for (int i = 0; i < lemmatizerCount; i++) {
+            lemmatizers.execute(this::lemmatize);
+        }
+        persister.start();
+    }
+
+    /**
+     * Передаёт скачанную страницу в конвейер, блокируясь, пока очередь заполнена.
+     */
+    public void accept(Page page) {
+        page.setSite(site);
+        try {
+            fetched.put(page);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Дожидается обработки всех принятых страниц.
+     *
+     * @return ошибка сохранения или {@code null}
+     */
+    public Exception finish() {
+        try {
+            for (int i = 0; i < lemmatizerCount; i++) {
+                fetched.put(END_OF_PAGES);
+            }
+            lemmatizers.shutdown();
+            lemmatizers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            lemmatized.put(END_OF_BATCHES);
+            persister.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            lemmatizers.shutdownNow();
+            persister.interrupt();
+            return e;
+        } finally {
+            queueGauges.forEach(metrics::remove);
+        }
+        return failure;
+    }
+
+    private void lemmatize() {
+        LemmaFinder loaded = null;
+        try {
+            loaded = LemmaFinder.getInstance();
+        } catch (IOException e) {
+            log.error("Не удалось загрузить морфологию для сайта: {}", site.getName(), e);
+            fail(e);
+        }
+        LemmaFinder lemmaFinder = loaded;
+        LemmatizedBatch batch = new LemmatizedBatch(batchSize);
+        try {
+            for (Page page = fetched.poll(FLUSH_MILLIS, TimeUnit.MILLISECONDS); page != END_OF_PAGES;
+                 page = fetched.poll(FLUSH_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (page == null || batch.size() >= batchSize) {
+                    batch = flush(batch);
+                }
+                if (page != null && failure == null) {
+                    Page fetchedPage = page;
+                    batch.add(metrics.lemmatize(site.getUrl(), () -> LemmatizedPage.of(fetchedPage, lemmaFinder)));
+                    progress.lemmatized();
+                }
+            }
+            flush(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private LemmatizedBatch flush(LemmatizedBatch batch) throws InterruptedException {
+        if (batch.isEmpty()) {
+            return batch;
+        }
+        lemmatized.put(batch);
+        return new LemmatizedBatch(batchSize);
+    }
+
+    private void persist() {
+        try {
+            for (LemmatizedBatch batch = lemmatized.take(); batch != END_OF_BATCHES; batch = lemmatized.take()) {
+                if (failure == null) {
+                    write(batch);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(LemmatizedBatch batch) {
+        try {
+            pageWriter.write(site, batch, siteLemmas);
+            progress.indexed(batch.size());
+            batch.pages().forEach(page -> written.accept(page.page()));
+            log.info("Сохранено страниц сайта {}: {}", site.getName(), batch.size());
+        } catch (Exception e) {
+            log.error("Ошибка при сохранении страниц сайта: {}", site.getName(), e);
+            fail(e);
+        }
+    }
+
+    private synchronized void fail(Exception e) {
+        if (failure != null) {
+            return;
+        }
+        failure = e;
+        failed.run();
+    }
+}
@@ -0,0 +1,85 @@
+package searchengine.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import searchengine.dto.statistics.IndexingProgressItem;
+import searchengine.until.SiteProgress;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Ход индексации в памяти: по одному {@link SiteProgress} на сайт, последний запуск хранится до следующего.
+ * Подписчики SSE получают снимок всех сайтов событием {@code progress} раз в {@link #PUBLISH_MILLIS},
+ * пока идёт индексация, и последний раз после её завершения. Соединение закрывается через
+ * {@link #EMITTER_TIMEOUT}, браузерный EventSource переподключается сам.
+ */
+@Slf4j
+@Component
+public class IndexingProgress {
+
+    private static final long PUBLISH_MILLIS = 1000;
+    private static final Duration EMITTER_TIMEOUT = Duration.ofMinutes(30);
+
+    private final Map<String, SiteProgress> sites = new ConcurrentHashMap<>();
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+    private volatile boolean published = true;
+
+    /**
+     * Начинает новый запуск сайта, заменяя прежний.
+     */
+    public SiteProgress begin(String url, String name) {
+        SiteProgress progress = new SiteProgress(url, name);
+        sites.put(url, progress);
+        published = false;
+        return progress;
+    }
+
+    public SiteProgress site(String url) {
+        return sites.get(url);
+    }
+
+    public boolean isIndexing() {
+        return sites.values().stream().anyMatch(progress -> !progress.isFinished());
+    }
+
+    public List<IndexingProgressItem> snapshot() {
+        return sites.values().stream().map(SiteProgress::snapshot).toList();
+    }
+
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT.toMillis());
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(e -> emitters.remove(emitter));
+        emitters.add(emitter);
+        send(emitter, snapshot());
+        return emitter;
+    }
+
+    @Scheduled(fixedDelay = PUBLISH_MILLIS)
+    public void publish() {
+        boolean indexing = isIndexing();
+        if (emitters.isEmpty() || (!indexing && published)) {
+            return;
+        }
+        published = !indexing;
+        List<IndexingProgressItem> snapshot = snapshot();
+        emitters.forEach(emitter -> send(emitter, snapshot));
+    }
+
+    private void send(SseEmitter emitter, List<IndexingProgressItem> snapshot) {
+        try {
+            emitter.send(SseEmitter.event().name("progress").data(snapshot));
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Подписчик хода индексации отключился: {}", e.getMessage());
+            emitters.remove(emitter);
+        }
+    }
+}
@@ -2,45 +2,45 @@ package searchengine.services;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.tuple.Pair;
-import org.hibernate.Hibernate;
 import org.jsoup.Connection;
 import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheConfig;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.context.annotation.Lazy;
-import org.springframework.data.jpa.repository.EntityGraph;
-import org.springframework.jdbc.core.BatchPreparedStatementSetter;
-import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import searchengine.config.app.ConnectionSetting;
+import searchengine.config.app.CrawlerSetting;
+import searchengine.config.app.PipelineSetting;
 import searchengine.config.app.SiteConfig;
 import searchengine.config.app.SitesList;
+import searchengine.config.metrics.SearchEngineMetrics;
 import searchengine.dto.response.*;
+import searchengine.dto.search.RankedPages;
 import searchengine.exception.IndexingSitesException;
 import searchengine.exception.ResourcesNotFoundException;
+import searchengine.index.InvertedIndex;
 import searchengine.model.*;
-import searchengine.repository.IndexRepository;
-import searchengine.repository.LemmaRepository;
+import searchengine.repository.CrawlCheckpointRepository;
 import searchengine.repository.PageRepository;
 import searchengine.repository.SiteRepository;
+import searchengine.until.CrawlCheckpointStore;
+import searchengine.until.CrawlHistory;
+import searchengine.until.CrawlerEngine;
+import searchengine.until.KnownPage;
 import searchengine.until.LemmaFinder;
 import searchengine.until.SiteCrawler;
+import searchengine.until.SiteProgress;
 import searchengine.until.SnippetGenerator;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
-import java.sql.PreparedStatement;
-import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static searchengine.model.Status.*;
 
@@ -52,90 +52,195 @@ public class IndexingSiteService {
 
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
-    private final LemmaRepository lemmaRepository;
     private final SitesList sitesList;
     private final ConnectionSetting connectionSetting;
-    private final IndexRepository indexRepository;
-    private ForkJoinPool pool;
-    private final JdbcTemplate jdbcTemplate;
+    private final PageWriter pageWriter;
+    private final PipelineSetting pipelineSetting;
+    private final CrawlerSetting crawlerSetting;
+    private final SiteGenerations siteGenerations;
+    private final SnippetService snippetService;
+    private final SearchRanker searchRanker;
+    private final SearchCacheInvalidator searchCacheInvalidator;
+    private final SearchEngineMetrics metrics;
+    private final IndexingProgress indexingProgress;
+    private final CrawlCheckpointRepository crawlCheckpointRepository;
+    private final InvertedIndex invertedIndex;
+    private volatile CrawlerEngine crawlerEngine;
     private final AtomicBoolean isIndexingRunning = new AtomicBoolean(false);
 
-    @Lazy
-    @Autowired
-    private IndexingSiteService selfProxy;
-
-    @CacheEvict(value = "Search_Result", allEntries = true)
-    public CompletableFuture<ResponseBoolean> startIndexingSite() {
-        if (isIndexingRunning.get()) {
+    /**
+     * Запускает индексацию всех сайтов из конфигурации.
+     *
+     * @param incremental повторная индексация без очистки таблиц: загружаются и лемматизируются
+     *                    только изменившиеся страницы; {@code null} - значение {@code crawler.incremental}
+     */
+    public CompletableFuture<ResponseBoolean> startIndexingSite(Boolean incremental) {
+        if (!isIndexingRunning.compareAndSet(false, true)) {
             log.info("Индексация уже запущена");
             return CompletableFuture.completedFuture(new ResponseError(new Exception("Индексация уже запущена")));
         }
-        isIndexingRunning.set(true);
+        if (sitesList.getSites() == null || sitesList.getSites().isEmpty()) {
+            isIndexingRunning.set(false);
+            log.info("Список сайтов для индексации пуст");
+            return CompletableFuture.completedFuture(new ResponseError(new Exception("Список сайтов для индексации пуст")));
+        }
         log.info("Индексация запущена");
-        pool = new ForkJoinPool();
-        proxiesDelete();
+        CrawlerEngine engine = new CrawlerEngine(crawlerSetting, connectionSetting);
+        crawlerEngine = engine;
+        boolean incrementalRun = incremental != null ? incremental : crawlerSetting.isIncremental();
+        siteGenerations.retireUnconfigured(sitesList.getSites().stream().map(SiteConfig::getUrl).toList());
+        AtomicInteger remainingSites = new AtomicInteger(sitesList.getSites().size());
         for (SiteConfig siteConfig : sitesList.getSites()) {
-            pool.execute(()-> {
-                log.info("Индексация сайта: {}", siteConfig.getUrl());
-                Site site = initSite(siteConfig);
-                siteRepository.save(site);
-                List<Page> pages = new SiteCrawler(siteConfig.getUrl(),site.getUrl(), connectionSetting).compute();
-                site.setPage(addSiteToPage(site, pages));
-                Pair<List<Lemma>, List<Index>> lemmaAndIndex = findLemmaToText(site, pages);
-                site.setLemma(lemmaAndIndex.getLeft());
-                site.setStatus(pool.isShutdown() ? FAILED : INDEXED);
-                site.setLastError(pool.isShutdown() ? "Индексация остановлена пользователем" : "");
-                proxiesSave(site, pages, lemmaAndIndex);
-                siteRepository.save(site);
-                log.info("Сайт проиндексирован: {}", siteConfig);
+            SiteProgress progress = indexingProgress.begin(siteConfig.getUrl(), siteConfig.getName());
+            engine.execute(()-> {
+                try {
+                    indexSite(engine, siteConfig, incrementalRun, progress);
+                } catch (RuntimeException e) {
+                    log.error("Ошибка индексации сайта: {}", siteConfig.getUrl(), e);
+                    progress.finish(FAILED, e.getMessage());
+                } finally {
+                    if (remainingSites.decrementAndGet() == 0) {
+                        engine.close();
+                        isIndexingRunning.set(false);
+                        log.info("Индексация завершена");
+                    }
+                }
             });
-
         }
-        isIndexingRunning.set(false);
         return CompletableFuture.completedFuture(new ResponseBoolean(true));
     }
 
-    @Async
-    protected void deleteAllDataIndexingSites(){
-        log.info("Очищение всех таблиц в БД");
-        jdbcTemplate.update("DELETE FROM site_schema.index");
-        jdbcTemplate.update("DELETE FROM site_schema.lemma");
-        jdbcTemplate.update("DELETE FROM site_schema.page");
-        jdbcTemplate.update("DELETE FROM site_schema.site");
-        log.info("Очищение завершено");
+    /**
+     * Если у сайта есть поколение с сохранённым состоянием обхода (индексация была остановлена или
+     * приложение упало) и {@code crawler.resume} включён, обход продолжается в том же поколении:
+     * уже записанные страницы узнаются по истории, как при повторной индексации.
+     * Остановленное пользователем новое поколение сохраняется для продолжения, а не удаляется.
+     */
+    private void indexSite(CrawlerEngine engine, SiteConfig siteConfig, boolean incremental, SiteProgress progress) {
+        log.info("Индексация сайта: {}", siteConfig.getUrl());
+        Site current = siteRepository.findByUrlAndActiveTrue(siteConfig.getUrl());
+        Integer resumable = crawlerSetting.isResume() ? crawlCheckpointRepository.findResumable(siteConfig.getUrl()) : null;
+        Site resumed = resumable == null ? null : siteRepository.findById(resumable).orElse(null);
+        if (resumed != null) {
+            log.info("Продолжение прерванной индексации сайта {}: поколение {}", siteConfig.getUrl(), resumed.getId());
+        }
+        Site previous = resumed != null ? resumed : incremental ? current : null;
+        Site site = previous;
+        if (previous == null) {
+            siteGenerations.discardStale(siteConfig.getUrl());
+            site = initSite(siteConfig);
+            site.setActive(false);
+        }
+        site.setStatus(INDEXING);
+        site.setStatusTime(LocalDateTime.now());
+        site.setLastError("");
+        siteRepository.save(site);
+        CrawlHistory history = previous == null ? CrawlHistory.EMPTY : pageWriter.loadHistory(site);
+        IndexingPipeline pipeline = previous == null
+                ? new IndexingPipeline(site, pageWriter, pipelineSetting, metrics, progress)
+                : new IndexingPipeline(site, pageWriter, pipelineSetting, metrics, progress, pageWriter.loadLemmas(site));
+        CrawlCheckpointStore checkpoints = crawlerSetting.isResume()
+                ? crawlCheckpointRepository.store(site.getId()) : CrawlCheckpointStore.NONE;
+        SiteCrawler crawler = new SiteCrawler(engine, site.getUrl(), pipeline::accept, history, metrics, progress,
+                checkpoints);
+        pipeline.onWritten(crawler::written);
+        pipeline.onFailure(crawler::abort);
+        pipeline.start();
+        crawler.crawl();
+        Exception failure = pipeline.finish();
+        if (previous != null && resumed == null && !engine.isStopped() && failure == null) {
+            failure = removeMissingPages(site, history, crawler.seenPaths());
+        }
+        if (!engine.isStopped() && failure == null) {
+            checkpoints.clear();
+        }
+        site.setStatus(engine.isStopped() || failure != null ? FAILED : INDEXED);
+        site.setLastError(engine.isStopped() ? "Индексация остановлена пользователем"
+                : failure != null ? failure.getMessage() : "");
+        site.setStatusTime(LocalDateTime.now());
+        if (site.isActive()) {
+            siteRepository.save(site);
+            flushIndex(site.getUrl());
+            searchCacheInvalidator.evictSite(site.getUrl());
+        } else if (site.getStatus() == FAILED && current != null) {
+            log.info("Переиндексация сайта {} не завершена, поиск остаётся на прежнем поколении", siteConfig.getUrl());
+            current.setLastError("Переиндексация не завершена: " + site.getLastError());
+            siteRepository.save(current);
+            if (engine.isStopped() && crawlerSetting.isResume()) {
+                siteRepository.save(site);
+            } else {
+                siteGenerations.discard(site);
+            }
+        } else {
+            siteGenerations.activate(site);
+        }
+        progress.finish(site.getStatus(), site.getLastError());
+        log.info("Сайт проиндексирован: {}", siteConfig);
+    }
+
+    /**
+     * Записывает буфер индекса перед очисткой кеша: иначе поиск до следующего сброса буфера не видит
+     * новых страниц и снова кладёт в кеш устаревший результат.
+     */
+    private void flushIndex(String siteUrl) {
+        try {
+            invertedIndex.flush();
+        } catch (UncheckedIOException e) {
+            log.error("Не удалось записать буфер индекса после записи сайта {}", siteUrl, e);
+        }
+    }
+
+    private Exception removeMissingPages(Site site, CrawlHistory history, Set<String> seenPaths) {
+        List<Integer> missing = history.pages().stream()
+                .filter(page -> !seenPaths.contains(page.path()))
+                .map(KnownPage::id)
+                .toList();
+        try {
+            pageWriter.removePages(site, missing);
+            log.info("Удалено пропавших страниц сайта {}: {}", site.getName(), missing.size());
+            return null;
+        } catch (RuntimeException e) {
+            log.error("Ошибка при удалении страниц сайта: {}", site.getName(), e);
+            return e;
+        }
     }
 
     public ResponseBoolean stopIndexing() {
-        if (!pool.isShutdown()) {
-            pool.shutdown();
+        CrawlerEngine engine = crawlerEngine;
+        if (isIndexingRunning.get() && engine != null && !engine.isStopped()) {
+            engine.stop();
             log.info("Индексация была остановлена пользователем");
             return new ResponseBoolean(true);
         }
         throw new IndexingSitesException("Индексация не запущена");
     }
 
-    @CacheEvict(value = "Search_Result", allEntries = true)
     public ResponseBoolean deleteSiteIndexing(Integer id) {
-        if (!siteRepository.existsById(id)) {
+        Optional<Site> site = siteRepository.findById(id);
+        if (site.isEmpty()) {
             return new ResponseError(new ResourcesNotFoundException(String.format("По вашему запросу ничего не найдено, " +
                     "по такому %d сайт не найден",id)));
         }
-        siteRepository.deleteById(id);
+        siteGenerations.discard(site.get());
         return new ResponseBoolean(true);
     }
 
-    @CacheEvict(value = "Search_Result", allEntries = true)
+    /**
+     * Переиндексирует одну страницу. Страница сначала загружается, и только после успешной загрузки
+     * прежняя версия заменяется новой, так что неудачный запрос не теряет уже проиндексированную страницу.
+     * Из кешей поиска удаляются только запросы этого сайта с леммами прежней или новой версии страницы.
+     */
     public ResponseBoolean indexPage(String url) {
         String urlToPage = URLDecoder.decode(url.substring(url.indexOf("h")), StandardCharsets.UTF_8);
         SiteConfig siteConfig = checkPageToSiteConfig(urlToPage).orElseThrow(() -> new ResourcesNotFoundException(String.format(
                 "Данная страница %s находится за переделами конфигурационных файлов", urlToPage)));
         String path = urlToPage.substring(siteConfig.getUrl().length());
-        if (checkIndexingPage(urlToPage, siteConfig)) {
-            log.info("Такая страница {} уже есть в базе данных",urlToPage);
-            pageRepository.deletePageByPath(path);
-            log.info("Все данные которые были связаны со страницей: {} были удалены",urlToPage);
+        Site site = siteRepository.findByUrlAndActiveTrue(siteConfig.getUrl());
+        if (site == null) {
+            return new ResponseError(new IndexingSitesException(String.format(
+                    "Сайт %s ещё не проиндексирован, сначала запустите полную индексацию", siteConfig.getUrl())));
         }
-        Site site = siteRepository.findByUrl(siteConfig.getUrl());
+        LemmatizedPage lemmatizedPage;
         try {
             Connection.Response response = Jsoup.connect(urlToPage)
                     .userAgent(connectionSetting.getCurrentUserAgent())
@@ -148,113 +253,80 @@ public class IndexingSiteService {
                     .code(response.statusCode())
                     .content(response.body())
                     .build();
-            findLemmaAndIndexToIndexPage(site,page);
-        } catch (IOException io){
-            io.printStackTrace();
+            lemmatizedPage = LemmatizedPage.of(page, LemmaFinder.getInstance());
+        } catch (IOException io) {
+            log.error("Не удалось загрузить страницу {}: {}", urlToPage, io.getMessage());
+            return new ResponseError(new IndexingSitesException(String.format(
+                    "Не удалось загрузить страницу %s: %s", urlToPage, io.getMessage())));
+        }
+        List<Integer> existing = pageRepository.findIdsBySiteAndPath(site, path);
+        Set<String> changedLemmas = new HashSet<>(pageWriter.lemmasOf(existing));
+        if (!existing.isEmpty()) {
+            log.info("Такая страница {} уже есть в базе данных, она будет заменена", urlToPage);
+            lemmatizedPage.page().setId(existing.get(0));
         }
+        Map<String, Lemma> siteLemmas = pageWriter.loadLemmas(site, lemmatizedPage.lemmas().keySet());
+        pageWriter.write(site, List.of(lemmatizedPage), siteLemmas);
+        if (existing.size() > 1) {
+            pageWriter.removePages(site, existing.subList(1, existing.size()));
+        }
+        changedLemmas.addAll(lemmatizedPage.lemmas().keySet());
+        flushIndex(siteConfig.getUrl());
+        searchCacheInvalidator.evictLemmas(siteConfig.getUrl(), changedLemmas);
 
-      return new ResponseBoolean(true);
+        return new ResponseBoolean(true);
     }
 
-    @Cacheable(value = "Search_Result",keyGenerator = "searchKeyGenerator")
+    /**
+     * Ответ кешируется, только пока поиск идёт по инвертированному индексу (готов и до, и после вызова):
+     * выдача SQL-поиска до готовности индекса ранжирована иначе и не должна пережить его готовность.
+     */
+    @Cacheable(value = "Search_Result", keyGenerator = "searchKeyGenerator",
+            condition = "!#query.isBlank() && @invertedIndex.ready", unless = "!@invertedIndex.ready")
     public ResponseBoolean systemSearch(String query, String siteUrl, Integer offset, Integer limit) {
         if (query.isBlank()) {
             return new ResponseEmptySearchQuery(false, "Пустой поисковый запрос");
         }
         try {
-            Site site = siteRepository.findByUrl(siteUrl);
             LemmaFinder lemmaFinder = LemmaFinder.getInstance();
-            Set<String> uniqueLemma = lemmaFinder.getLemmaSet(query);
-            List<Lemma> filterLemma = calculatingLemmasOnPages(uniqueLemma, site);
-            if(filterLemma.isEmpty()){
+            List<Set<String>> queryWords = metrics.searchPhase(SearchEngineMetrics.PHASE_LEMMAS,
+                    () -> lemmaFinder.getQueryWords(query));
+            Set<String> uniqueLemma = new HashSet<>();
+            queryWords.forEach(uniqueLemma::addAll);
+            RankedPages ranking = searchRanker.ranking(queryWords, siteUrl, offset + limit);
+            if(ranking.totalHits() == 0){
                 return new ResponseSearch(true,0,List.of());
             }
-            List<Page> pages = indexRepository.findPagesByLemma(filterLemma.get(0).getId());
-            for (Lemma lemma : filterLemma) {
-                List<Page> pageWithLemma = indexRepository.findPagesByLemma(lemma.getId());
-
-                pages = pages.stream()
-                        .filter(pageWithLemma::contains)
-                        .toList();
-            }
-            List<PageRelevance> resultRelevance = calculatedRelevance(filterLemma);
-            resultRelevance.sort(Comparator.comparing(PageRelevance::absoluteRelevance).reversed());
-            List<ResultSearchRequest> resultSearchRequestList = createdRequest(resultRelevance, query);
-            int totalResultSearchCount = resultSearchRequestList.size();
-            List<ResultSearchRequest> paginationResult = resultSearchRequestList.stream()
-                    .skip(offset)
-                    .limit(limit)
-                    .toList();
-            return new ResponseSearch(true, totalResultSearchCount, paginationResult);
+            List<PageRelevance> window = metrics.searchPhase(SearchEngineMetrics.PHASE_PAGES,
+                    () -> pageWindow(ranking, offset, limit));
+            List<ResultSearchRequest> results = metrics.searchPhase(SearchEngineMetrics.PHASE_SNIPPETS,
+                    () -> createdRequest(window, uniqueLemma, query));
+            return new ResponseSearch(true, ranking.totalHits(), results);
 
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
-    private void findLemmaAndIndexToIndexPage(Site site,Page page) throws IOException {
-        List<Index> indexList = new ArrayList<>();
-        List<Lemma> lemmaList = new ArrayList<>();
-        LemmaFinder lemmaFinder = LemmaFinder.getInstance();
-        Map<String, Integer> currentLemmas = lemmaFinder.collectLemmas(page.getContent());
-        currentLemmas.forEach((key, value) -> {
-            Lemma lemma = lemmaRepository.findByLemmaToSiteId(key,site);
-            if(lemma == null){
-                lemma = Lemma.builder()
-                        .site(site)
-                        .lemma(key)
-                        .frequency(1)
-                        .build();
+    /**
+     * Загружает страницы только запрошенного окна результатов, сохраняя порядок по релевантности.
+     */
+    private List<PageRelevance> pageWindow(RankedPages ranking, int offset, int limit) {
+        int from = Math.min(offset, ranking.pageIds().length);
+        int to = Math.min(offset + limit, ranking.pageIds().length);
+        List<Integer> pageIds = Arrays.stream(ranking.pageIds(), from, to).boxed().toList();
+        Map<Integer, Page> pages = pageRepository.findAllWithSiteByIdIn(pageIds).stream()
+                .collect(Collectors.toMap(Page::getId, Function.identity()));
+        double maxAbsoluteRelevance = ranking.maxScore() > 0 ? ranking.maxScore() : 0.1;
+        List<PageRelevance> resultRelevance = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            Page page = pages.get(ranking.pageIds()[i]);
+            double score = ranking.scores()[i];
+            if (page != null) {
+                resultRelevance.add(new PageRelevance(page, score, score / maxAbsoluteRelevance));
             }
-            lemma.setFrequency(lemma.getFrequency() + 1);
-            lemmaList.add(lemma);
-            Index index = new Index();
-            index.setPage(page);
-            index.setLemma(lemma);
-            index.setRank((float) lemma.getFrequency());
-            indexList.add(index);
-        });
-        allInsert(site,Collections.singletonList(page),Pair.of(lemmaList,indexList));
-    }
-
-    private Pair<List<Lemma>, List<Index>> findLemmaToText(Site site, List<Page> pages) {
-        log.info("Начат поиск лемм сайта: {}",site.getName());
-        Map<String, Lemma> allLemmas = new ConcurrentHashMap<>();
-        List<Index> indexList = new ArrayList<>();
-        pages.parallelStream().forEach(page -> {
-            try {
-                LemmaFinder lemmaFinder = LemmaFinder.getInstance();
-                Map<String, Integer> currentLemmas = lemmaFinder.collectLemmas(page.getContent());
-                currentLemmas.forEach((key, value) -> {
-                    Lemma lemma = allLemmas.computeIfAbsent(key, text -> {
-                        Lemma l = new Lemma();
-                        l.setSite(site);
-                        l.setLemma(text);
-                        l.setFrequency(1);
-                        return l;
-                    });
-                    lemma.setFrequency(lemma.getFrequency() + 1);
-                    Index index = new Index();
-                    index.setPage(page);
-                    index.setLemma(lemma);
-                    index.setRank((float) lemma.getFrequency());
-                    indexList.add(index);
-                });
-            } catch (IOException e) {
-                log.error("Ошибка при лемматизации страницы: {}", page.getPath(), e);
-            }
-        });
-        return Pair.of(new ArrayList<>(allLemmas.values()), indexList);
-    }
-
-    private boolean checkIndexingPage(String url, SiteConfig siteConfig) {
-        String path = url.substring(siteConfig.getUrl().length());
-        return pageRepository.existsByPath(path);
-    }
-
-    private List<Page> addSiteToPage(Site site, List<Page> pages) {
-        pages.forEach(p -> p.setSite(site));
-        return pages;
+        }
+        return resultRelevance;
     }
 
     private Optional<SiteConfig> checkPageToSiteConfig(String url) {
@@ -276,107 +348,18 @@ public class IndexingSiteService {
         return site;
     }
 
-    @Async
-    @Transactional
-    protected void allInsert(Site site, List<Page> pages,Pair<List<Lemma>, List<Index>> lemmaAndIndex){
-            String string = pool.isShutdown() ? String.format("Сохранение сайта %s с остановленной индексацией",site.getName())
-                    : String.format("Сохранение проиндексированного сайта %s", site.getName());
-            log.info(string);
-            log.info("Сохранение сайта: {}" ,site.getName());
-            siteRepository.save(site);
-            log.info("Сохранение страниц: {}" , site.getName());
-            pageRepository.saveAll(pages);
-            log.info("Сохранение лемм: {}" , site.getName());
-            lemmaRepository.saveAll(lemmaAndIndex.getLeft());
-            log.info("Сохранение индексов страниц и лемм: {}", site.getName());
-            batchIndexInsert(lemmaAndIndex.getRight());
-            string = pool.isShutdown() ? String.format("Сохранение сайта %s с остановленной индексацией завершено",site.getName())
-                    : String.format("Сохранение проиндексированного сайта %s завершено", site.getName());
-            log.info(string);
-    }
-
-    @EntityGraph(attributePaths = "lemma")
-    private void batchIndexInsert(List<Index> indexList) {
-        String sql = "INSERT INTO index (page_id,lemma_id,rank) VALUES (?,?,?)";
-        jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
-            @Override
-            public void setValues(PreparedStatement ps, int i) throws SQLException {
-                Index index = indexList.get(i);
-                ps.setObject(1, index.getPage().getId());
-                ps.setObject(2, index.getLemma().getId());
-                ps.setFloat(3, index.getRank());
-            }
-            @Override
-            public int getBatchSize() {
-                return indexList.size();
-            }
-        });
-    }
-
-    private List<PageRelevance> calculatedRelevance(List<Lemma> filterLemma) {
-        List<PageRelevance> resultRelevance = new ArrayList<>();
-        List<Integer> lemmaIds = filterLemma.stream()
-                .mapToInt(Lemma::getId)
-                .boxed()
-                .toList();
-        List<Index> indexList = indexRepository.findByLemmaIdIn(lemmaIds);
-        Map<Page, Double> pageToRelevance = new HashMap<>();
-        for (Index index : indexList) {
-            Page page = index.getPage();
-            double rank = index.getRank();
-            pageToRelevance.put(page, pageToRelevance.getOrDefault(page, 0.0) + rank);
-        }
-        double maxAbsoluteRelevance = pageToRelevance.values().stream()
-                .mapToDouble(Double::doubleValue)
-                .max()
-                .orElse(0.1);
-        for (Map.Entry<Page, Double> entry : pageToRelevance.entrySet()) {
-            Page page = entry.getKey();
-            double absoluteRelevance = entry.getValue();
-            double relativeRelevance = absoluteRelevance / maxAbsoluteRelevance;
-            resultRelevance.add(new PageRelevance(page, absoluteRelevance, relativeRelevance));
-        }
-        return resultRelevance;
-    }
-
-    private List<Lemma> calculatingLemmasOnPages(Set<String> lemmas, Site site) {
-        long totalPages = pageRepository.count();
-        double threshold = 0.8;
-        Set<Lemma> filterLemma = new TreeSet<>(Comparator.comparing(Lemma::getFrequency));
-        for (String lemma1 : lemmas) {
-            List<Lemma> lemmaList = site == null ? lemmaRepository.findByLemma(lemma1)
-                    : Collections.singletonList(lemmaRepository.findByLemmaToSiteId(lemma1, site));
-            for (Lemma currentLemma : lemmaList) {
-                if (currentLemma != null) {
-                    long countPageToLemma = indexRepository.countPageToLemma(currentLemma.getId());
-                    if ((double) countPageToLemma / totalPages <= threshold || lemmas.size() < 4) {
-                        filterLemma.add(currentLemma);
-                    }
-                }
-            }
-        }
-        return new ArrayList<>(filterLemma);
-    }
-
-    private List<ResultSearchRequest> createdRequest(List<PageRelevance> pageRelevance, String query) {
+    private List<ResultSearchRequest> createdRequest(List<PageRelevance> pageRelevance, Set<String> lemmas, String query) {
+        Map<Integer, String> snippets = snippetService.snippets(
+                pageRelevance.stream().map(PageRelevance::page).toList(), lemmas, query);
         return pageRelevance.stream()
                 .map(page -> {
                         String url = page.page().getSite().getUrl();
                         String nameUrl = page.page().getSite().getName();
                         String uri = page.page().getPath();
-                        Document document = Jsoup.parse(page.page().getContent());
-                        String title = document.title();
-                        String snippet = SnippetGenerator.generatedSnippet(query, page.page().getContent());
+                        String title = snippetService.title(page.page());
+                        String snippet = snippets.get(page.page().getId());
                         return new ResultSearchRequest(url, nameUrl, uri, title, snippet, page.relativeRelevance());
                 }).toList();
     }
 
-    protected void proxiesSave(Site site, List<Page> pages,Pair<List<Lemma>, List<Index>> lemmaAndIndex){
-        selfProxy.allInsert(site, pages, lemmaAndIndex);
-    }
-
-    protected void proxiesDelete(){
-        selfProxy.deleteAllDataIndexingSites();
-    }
-
 }
@@ -0,0 +1,51 @@
+package searchengine.services;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Пачка страниц, собранная одним потоком лемматизации. Число страниц с каждой леммой
+ * считается в локальной таблице потока по мере добавления, поэтому {@link PageWriter}
+ * получает уже сложенные частоты и потоки не делят изменяемых данных.
+ */
+public final class LemmatizedBatch {
+
+    private final List<LemmatizedPage> pages;
+    private final Map<String, Integer> pageCounts = new HashMap<>();
+
+    LemmatizedBatch(int capacity) {
+        this.pages = new ArrayList<>(capacity);
+    }
+
+    static LemmatizedBatch of(List<LemmatizedPage> pages) {
+        LemmatizedBatch batch = new LemmatizedBatch(pages.size());
+        pages.forEach(batch::add);
+        return batch;
+    }
+
+    void add(LemmatizedPage page) {
+        pages.add(page);
+        page.lemmas().keySet().forEach(lemma -> pageCounts.merge(lemma, 1, Integer::sum));
+    }
+
+    List<LemmatizedPage> pages() {
+        return pages;
+    }
+
+    /**
+     * Лемма -> число страниц пачки, на которых она встречается.
+     */
+    Map<String, Integer> pageCounts() {
+        return pageCounts;
+    }
+
+    int size() {
+        return pages.size();
+    }
+
+    boolean isEmpty() {
+        return pages.isEmpty();
+    }
+}
@@ -0,0 +1,28 @@
+package searchengine.services;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import searchengine.model.Page;
+import searchengine.until.LemmaFinder;
+import searchengine.until.TokenPositions;
+
+import java.util.Map;
+
+public record LemmatizedPage(
+
+        Page page,
+
+        Map<String, TokenPositions> lemmas
+) {
+
+    /**
+     * Разбирает HTML страницы один раз: заголовок и текст сохраняются в странице,
+     * а леммы с позициями вхождений считаются по тексту.
+     */
+    public static LemmatizedPage of(Page page, LemmaFinder lemmaFinder) {
+        Document document = Jsoup.parse(page.getContent());
+        page.setTitle(document.title());
+        page.setText(document.text());
+        return new LemmatizedPage(page, lemmaFinder.collectLemmaPositions(page.getText()));
+    }
+}
@@ -0,0 +1,274 @@
+package searchengine.services;
+
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import searchengine.config.metrics.SearchEngineMetrics;
+import searchengine.index.InvertedIndex;
+import searchengine.model.Index;
+import searchengine.model.Lemma;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.repository.LemmaRepository;
+import searchengine.until.CrawlHistory;
+import searchengine.until.KnownPage;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Сохраняет пачку лемматизированных страниц одного сайта в одной транзакции.
+ * Новые страницы, леммы и записи index пишутся через {@link CopyLoader}.
+ * {@code siteLemmas} - уже сохранённые леммы сайта, новые леммы добавляются в неё,
+ * у существующих увеличивается frequency (число страниц с леммой).
+ * Страница с id - новая версия уже сохранённой: её старые записи index удаляются,
+ * а frequency их лемм уменьшается, так что у лемм меняется только разница.
+ * Изменения числа страниц, лемм и записей index сайта пишутся в той же транзакции через {@link CorpusStatistics}.
+ * Время пачки до конца транзакции и число записанных строк пишутся в {@link SearchEngineMetrics}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PageWriter {
+
+    private final LemmaRepository lemmaRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final InvertedIndex invertedIndex;
+    private final CopyLoader copyLoader;
+    private final CorpusStatistics corpusStatistics;
+    private final SearchEngineMetrics metrics;
+
+    @Transactional
+    public void write(Site site, List<LemmatizedPage> batch, Map<String, Lemma> siteLemmas) {
+        write(site, LemmatizedBatch.of(batch), siteLemmas);
+    }
+
+    /**
+     * Сохраняет пачку, частоты лемм которой уже сложены потоком лемматизации.
+     */
+    @Transactional
+    public void write(Site site, LemmatizedBatch lemmatizedBatch, Map<String, Lemma> siteLemmas) {
+        timeTransaction(site);
+        List<LemmatizedPage> batch = lemmatizedBatch.pages();
+        List<Page> pages = batch.stream().map(LemmatizedPage::page).toList();
+        List<Page> created = pages.stream().filter(page -> page.getId() == null).toList();
+        List<Page> changed = pages.stream().filter(page -> page.getId() != null).toList();
+        List<Integer> changedIds = changed.stream().map(Page::getId).toList();
+        int releasedIndexes = releasePages(changedIds);
+        assignIds("page", created, Page::setId);
+        copyLoader.copyPages(created);
+        batchPageUpdate(changed);
+
+        List<Lemma> createdLemmas = new ArrayList<>();
+        Map<Integer, Integer> frequencyDeltas = new HashMap<>();
+        lemmatizedBatch.pageCounts().forEach((text, count) -> {
+            Lemma lemma = siteLemmas.get(text);
+            if (lemma == null) {
+                lemma = Lemma.builder()
+                        .site(site)
+                        .lemma(text)
+                        .frequency(count)
+                        .build();
+                createdLemmas.add(lemma);
+                siteLemmas.put(text, lemma);
+            } else {
+                lemma.setFrequency(lemma.getFrequency() + count);
+                frequencyDeltas.put(lemma.getId(), count);
+            }
+        });
+        assignIds("lemma", createdLemmas, Lemma::setId);
+        copyLoader.copyLemmas(createdLemmas);
+        batchFrequencyUpdate(frequencyDeltas);
+
+        List<Index> indexList = new ArrayList<>();
+        for (LemmatizedPage lemmatizedPage : batch) {
+            lemmatizedPage.lemmas().forEach((text, positions) -> {
+                Index index = new Index();
+                index.setPage(lemmatizedPage.page());
+                index.setLemma(siteLemmas.get(text));
+                index.setRank((float) positions.size());
+                index.setPositions(positions.toBytes());
+                indexList.add(index);
+            });
+        }
+        copyLoader.copyIndexes(indexList);
+        jdbcTemplate.update("UPDATE site SET status_time = now() WHERE id = ?", site.getId());
+        corpusStatistics.record(site.getId(), created.size(), createdLemmas.size(), indexList.size() - releasedIndexes);
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invertedIndex.apply(site.getId(), changedIds, pages, indexList);
+                metrics.persistedRows(site.getUrl(), "page", pages.size());
+                metrics.persistedRows(site.getUrl(), "lemma", createdLemmas.size() + frequencyDeltas.size());
+                metrics.persistedRows(site.getUrl(), "index", indexList.size());
+            }
+        });
+    }
+
+    /**
+     * Засекает время записи пачки до коммита или отката текущей транзакции.
+     */
+    private void timeTransaction(Site site) {
+        Timer.Sample sample = metrics.startTimer();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                metrics.persisted(site.getUrl(), sample, status == STATUS_COMMITTED);
+            }
+        });
+    }
+
+    /**
+     * Удаляет страницы, пропавшие с сайта, и леммы, которые после этого не встречаются ни на одной странице.
+     */
+    @Transactional
+    public void removePages(Site site, List<Integer> pageIds) {
+        int releasedIndexes = releasePages(pageIds);
+        jdbcTemplate.batchUpdate("DELETE FROM page WHERE id = ?", pageIds, pageIds.size(),
+                (ps, pageId) -> ps.setInt(1, pageId));
+        int removedLemmas = jdbcTemplate.update("DELETE FROM lemma WHERE site_id = ? AND frequency <= 0", site.getId());
+        corpusStatistics.record(site.getId(), -pageIds.size(), -removedLemmas, -releasedIndexes);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invertedIndex.apply(site.getId(), pageIds, List.of(), List.of());
+            }
+        });
+    }
+
+    /**
+     * Леммы, встречающиеся на страницах.
+     */
+    @Transactional(readOnly = true)
+    public Set<String> lemmasOf(List<Integer> pageIds) {
+        if (pageIds.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "SELECT DISTINCT l.lemma FROM lemma l JOIN index i ON i.lemma_id = l.id WHERE i.page_id = ANY (?)");
+            statement.setArray(1, connection.createArrayOf("integer", pageIds.toArray()));
+            return statement;
+        }, (rs, rowNum) -> rs.getString(1)));
+    }
+
+    /**
+     * Леммы сайта, сохранённые прошлой индексацией, для повторного обхода.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Lemma> loadLemmas(Site site) {
+        Map<String, Lemma> siteLemmas = new HashMap<>();
+        lemmaRepository.findAllBySite(site).forEach(lemma -> siteLemmas.put(lemma.getLemma(), lemma));
+        return siteLemmas;
+    }
+
+    /**
+     * Сохранённые леммы сайта из переданного набора, одним запросом.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Lemma> loadLemmas(Site site, Collection<String> lemmas) {
+        Map<String, Lemma> siteLemmas = new HashMap<>();
+        if (!lemmas.isEmpty()) {
+            lemmaRepository.findAllBySiteAndLemmaIn(site, lemmas).forEach(lemma -> siteLemmas.put(lemma.getLemma(), lemma));
+        }
+        return siteLemmas;
+    }
+
+    /**
+     * Валидаторы и хеши страниц сайта из прошлой индексации. Содержимое не загружается:
+     * оно читается по одной странице, только когда сервер ответил 304.
+     */
+    public CrawlHistory loadHistory(Site site) {
+        Map<String, KnownPage> pages = new HashMap<>();
+        jdbcTemplate.query("SELECT id, path, code, etag, last_modified, content_hash FROM page WHERE site_id = ?",
+                rs -> {
+                    pages.put(rs.getString("path"), new KnownPage(rs.getInt("id"), rs.getString("path"), rs.getInt("code"),
+                            rs.getString("etag"), rs.getString("last_modified"), rs.getString("content_hash")));
+                }, site.getId());
+        return new CrawlHistory() {
+            @Override
+            public KnownPage find(String path) {
+                return pages.get(path);
+            }
+
+            @Override
+            public String content(KnownPage page) {
+                List<String> content = jdbcTemplate.queryForList("SELECT content FROM page WHERE id = ?",
+                        String.class, page.id());
+                return content.isEmpty() ? "" : content.get(0);
+            }
+
+            @Override
+            public Collection<KnownPage> pages() {
+                return pages.values();
+            }
+        };
+    }
+
+    /**
+     * @return число удалённых записей index
+     */
+    private int releasePages(List<Integer> pageIds) {
+        if (pageIds.isEmpty()) {
+            return 0;
+        }
+        jdbcTemplate.batchUpdate("UPDATE lemma l SET frequency = l.frequency - 1 FROM index i " +
+                        "WHERE i.lemma_id = l.id AND i.page_id = ?", pageIds, pageIds.size(),
+                (ps, pageId) -> ps.setInt(1, pageId));
+        return jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement("DELETE FROM index WHERE page_id = ANY (?)");
+            statement.setArray(1, connection.createArrayOf("integer", pageIds.toArray()));
+            return statement;
+        });
+    }
+
+    private void batchFrequencyUpdate(Map<Integer, Integer> frequencyDeltas) {
+        if (frequencyDeltas.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<Integer, Integer>> deltas = new ArrayList<>(frequencyDeltas.entrySet());
+        String sql = "UPDATE lemma SET frequency = frequency + ? WHERE id = ?";
+        jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setInt(1, deltas.get(i).getValue());
+                ps.setInt(2, deltas.get(i).getKey());
+            }
+            @Override
+            public int getBatchSize() {
+                return deltas.size();
+            }
+        });
+    }
+
+    private <T> void assignIds(String table, List<T> rows, BiConsumer<T, Integer> setter) {
+        List<Integer> ids = copyLoader.allocateIds(table, rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            setter.accept(rows.get(i), ids.get(i));
+        }
+    }
+
+    private void batchPageUpdate(List<Page> pages) {
+        String sql = "UPDATE page SET code = ?, content = ?, etag = ?, last_modified = ?, content_hash = ?, " +
+                "title = ?, text = ? WHERE id = ?";
+        jdbcTemplate.batchUpdate(sql, pages, pages.size(), (ps, page) -> {
+            ps.setInt(1, page.getCode());
+            ps.setString(2, page.getContent());
+            ps.setString(3, page.getEtag());
+            ps.setString(4, page.getLastModified());
+            ps.setString(5, page.getContentHash());
+            ps.setString(6, page.getTitle());
+            ps.setString(7, page.getText());
+            ps.setInt(8, page.getId());
+        });
+    }
+}
@@ -0,0 +1,78 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.stereotype.Component;
+import searchengine.config.cache.TwoLevelCacheManager;
+import searchengine.until.SearchCacheKey;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Точечная очистка кешей поиска по меткам {@link SearchCacheKey} вместо {@code allEntries}.
+ * Записи поиска по всем сайтам затрагиваются изменением любого сайта. Внутри транзакции
+ * удаление записей и снятие их меток откладываются до коммита, как и у {@code @CacheEvict}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SearchCacheInvalidator {
+
+    private static final List<String> CACHES = List.of("Search_Result", SearchRanker.RANKING_CACHE);
+
+    private final TwoLevelCacheManager redisCacheManager;
+
+    /**
+     * Удаляет все записи сайта: после смены поколения или удаления сайта изменились все его результаты.
+     */
+    public void evictSite(String siteUrl) {
+        List<String> scope = scope(siteUrl);
+        for (String cacheName : CACHES) {
+            Set<String> keys = new HashSet<>();
+            scope.forEach(tag -> keys.addAll(redisCacheManager.tagged(cacheName, tag)));
+            evict(cacheName, keys, scope);
+        }
+    }
+
+    /**
+     * Удаляет записи сайта, в запросах которых есть хотя бы одна из {@code lemmas}: только их результаты
+     * могли измениться при добавлении или удалении страницы с этими леммами.
+     */
+    public void evictLemmas(String siteUrl, Collection<String> lemmas) {
+        if (lemmas.isEmpty()) {
+            return;
+        }
+        List<String> scope = scope(siteUrl);
+        for (String cacheName : CACHES) {
+            Set<String> siteKeys = new HashSet<>();
+            scope.forEach(tag -> siteKeys.addAll(redisCacheManager.tagged(cacheName, tag)));
+            Set<String> keys = new HashSet<>();
+            List<String> tags = new ArrayList<>(scope);
+            for (String lemma : lemmas) {
+                String tag = SearchCacheKey.lemmaTag(lemma);
+                tags.add(tag);
+                redisCacheManager.tagged(cacheName, tag).stream().filter(siteKeys::contains).forEach(keys::add);
+            }
+            evict(cacheName, keys, tags);
+        }
+    }
+
+    private void evict(String cacheName, Set<String> keys, Collection<String> tags) {
+        Cache cache = redisCacheManager.getCache(cacheName);
+        if (cache == null || keys.isEmpty()) {
+            return;
+        }
+        keys.forEach(cache::evict);
+        redisCacheManager.untag(cacheName, tags, keys);
+        log.info("Из кеша {} удалено записей: {}", cacheName, keys.size());
+    }
+
+    private static List<String> scope(String siteUrl) {
+        return List.of(SearchCacheKey.siteTag(siteUrl), SearchCacheKey.siteTag(SearchCacheKey.ALL_SITES));
+    }
+}
@@ -0,0 +1,100 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import searchengine.config.app.CacheSetting;
+import searchengine.config.metrics.SearchEngineMetrics;
+import searchengine.dto.search.RankedPages;
+import searchengine.index.InvertedIndex;
+import searchengine.index.SearchHits;
+import searchengine.model.Site;
+import searchengine.repository.SearchRepository;
+import searchengine.repository.SiteRepository;
+import searchengine.until.SearchCacheKey;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Ранжирует страницы по словам запроса (каждое - набор нормальных форм) через инвертированный индекс, а пока он не готов -
+ * одним запросом {@link SearchRepository}.
+ * Ранжированный список кешируется в {@code Search_Ranking} по ключу {@link SearchCacheKey#ranking}
+ * с запасом в {@code search-cache.ranking-depth} страниц: следующие страницы выдачи нарезаются из него,
+ * а список пересчитывается глубже, только когда запрошено окно за его пределами.
+ * Результат SQL-поиска ранжирован суммой rank, а не оценкой индекса, поэтому в кеш не попадает:
+ * иначе после готовности индекса по тому же ключу выдавался бы список с другим порядком.
+ */
+@Service
+@RequiredArgsConstructor
+public class SearchRanker {
+
+    public static final String RANKING_CACHE = "Search_Ranking";
+
+    private final InvertedIndex invertedIndex;
+    private final SiteRepository siteRepository;
+    private final SearchRepository searchRepository;
+    private final CorpusStatistics corpusStatistics;
+    private final CacheSetting cacheSetting;
+    private final CacheManager cacheManager;
+    private final SearchEngineMetrics metrics;
+
+    /**
+     * @param siteUrl сайт запроса или {@code null} для всех сайтов
+     * @param needed  сколько первых страниц нужно выдаче ({@code offset + limit})
+     */
+    public RankedPages ranking(List<Set<String>> words, String siteUrl, int needed) {
+        if (!invertedIndex.isReady()) {
+            return rankInDatabase(words, siteUrl, needed);
+        }
+        SearchCacheKey key = SearchCacheKey.ranking(words, siteUrl);
+        Cache cache = cacheManager.getCache(RANKING_CACHE);
+        RankedPages cached = cache == null ? null : cache.get(key, RankedPages.class);
+        if (cached != null && cached.covers(needed)) {
+            return cached;
+        }
+        RankedPages ranked = rank(words, siteUrl, Math.max(needed, cacheSetting.getRankingDepth()));
+        if (cache != null) {
+            cache.put(key, ranked);
+        }
+        return ranked;
+    }
+
+    private RankedPages rankInDatabase(List<Set<String>> words, String siteUrl, int depth) {
+        Site site = siteUrl == null ? null : siteRepository.findByUrlAndActiveTrue(siteUrl);
+        double threshold = threshold(words);
+        return metrics.searchPhase(SearchEngineMetrics.PHASE_INTERSECTION, () -> searchRepository.search(words,
+                site == null ? null : site.getId(), threshold * corpusStatistics.totalPages(), depth));
+    }
+
+    private RankedPages rank(List<Set<String>> words, String siteUrl, int depth) {
+        Site site = siteUrl == null ? null : siteRepository.findByUrlAndActiveTrue(siteUrl);
+        double threshold = threshold(words);
+        List<Integer> siteIds = site == null ? siteRepository.findActiveIds() : List.of(site.getId());
+        SearchHits hits = metrics.searchPhase(SearchEngineMetrics.PHASE_INTERSECTION,
+                () -> invertedIndex.search(words, siteIds, threshold, depth));
+        return metrics.searchPhase(SearchEngineMetrics.PHASE_RANKING, () -> top(hits));
+    }
+
+    /**
+     * Доля страниц, выше которой слово считается слишком частым и не участвует в пересечении.
+     */
+    private static double threshold(List<Set<String>> words) {
+        return words.size() < 4 ? 1.0 : 0.8;
+    }
+
+    /**
+     * Индекс возвращает не больше {@code depth} лучших страниц уже по убыванию оценки,
+     * поэтому они только переносятся в {@link RankedPages}.
+     */
+    private static RankedPages top(SearchHits hits) {
+        int[] pageIds = new int[hits.size()];
+        double[] scores = new double[hits.size()];
+        for (int i = 0; i < hits.size(); i++) {
+            pageIds[i] = hits.pageId(i);
+            scores[i] = hits.score(i);
+        }
+        return new RankedPages(pageIds, scores, hits.totalHits());
+    }
+}
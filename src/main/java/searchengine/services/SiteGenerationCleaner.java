@@ -0,0 +1,47 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import searchengine.repository.CrawlCheckpointRepository;
+
+/**
+ * Удаляет выведенное из поиска поколение сайта небольшими пачками, каждая в своей транзакции,
+ * чтобы не держать длинных блокировок и дать autovacuum успевать за удалением.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SiteGenerationCleaner {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CorpusStatistics corpusStatistics;
+    private final CrawlCheckpointRepository crawlCheckpointRepository;
+
+    @Async
+    public void drop(int siteId) {
+        log.info("Удаление старого поколения сайта: {}", siteId);
+        int pages = 0;
+        Integer upper;
+        while ((upper = jdbcTemplate.queryForObject(
+                "SELECT max(id) FROM (SELECT id FROM page WHERE site_id = ? ORDER BY id LIMIT ?) b",
+                Integer.class, siteId, BATCH_SIZE)) != null) {
+            jdbcTemplate.update("DELETE FROM index WHERE page_id IN (SELECT id FROM page WHERE site_id = ? AND id <= ?)",
+                    siteId, upper);
+            pages += jdbcTemplate.update("DELETE FROM page WHERE site_id = ? AND id <= ?", siteId, upper);
+        }
+        int lemmas;
+        do {
+            lemmas = jdbcTemplate.update("DELETE FROM lemma WHERE id IN (SELECT id FROM lemma WHERE site_id = ? LIMIT ?)",
+                    siteId, BATCH_SIZE);
+        } while (lemmas > 0);
+        corpusStatistics.removeSite(siteId);
+        crawlCheckpointRepository.delete(siteId);
+        jdbcTemplate.update("DELETE FROM site WHERE id = ?", siteId);
+        log.info("Старое поколение сайта {} удалено, страниц: {}", siteId, pages);
+    }
+}
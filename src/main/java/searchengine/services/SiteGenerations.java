@@ -0,0 +1,94 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import searchengine.index.InvertedIndex;
+import searchengine.model.Site;
+import searchengine.repository.SiteRepository;
+
+import java.io.UncheckedIOException;
+import java.util.Collection;
+
+/**
+ * Поколения сайта: каждая полная переиндексация пишет в новую строку {@code site}, невидимую для поиска,
+ * и по завершении в одной транзакции становится активной вместо прежней.
+ * Прежнее поколение сразу исключается из инвертированного индекса, а строки удаляются в фоне.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SiteGenerations {
+
+    private final SiteRepository siteRepository;
+    private final InvertedIndex invertedIndex;
+    private final SiteGenerationCleaner cleaner;
+    private final SearchCacheInvalidator searchCacheInvalidator;
+
+    /**
+     * Перед переключением буфер индекса записывается на диск, чтобы новое поколение было видно поиску целиком.
+     */
+    @Transactional
+    public void activate(Site generation) {
+        try {
+            invertedIndex.flush();
+        } catch (UncheckedIOException e) {
+            log.error("Не удалось записать буфер индекса перед переключением сайта {}", generation.getUrl(), e);
+        }
+        Site current = siteRepository.findByUrlAndActiveTrue(generation.getUrl());
+        if (current != null && !current.getId().equals(generation.getId())) {
+            current.setActive(false);
+            siteRepository.save(current);
+            dropAfterCommit(current.getId());
+        }
+        generation.setActive(true);
+        siteRepository.save(generation);
+        searchCacheInvalidator.evictSite(generation.getUrl());
+        log.info("Поиск переключён на новое поколение сайта {}: {}", generation.getUrl(), generation.getId());
+    }
+
+    @Transactional
+    public void discard(Site generation) {
+        boolean wasActive = generation.isActive();
+        generation.setActive(false);
+        siteRepository.save(generation);
+        if (wasActive) {
+            searchCacheInvalidator.evictSite(generation.getUrl());
+        }
+        dropAfterCommit(generation.getId());
+    }
+
+    /**
+     * Удаляет неактивные поколения, оставшиеся от прерванных запусков.
+     */
+    public void discardStale(String url) {
+        siteRepository.findByUrlAndActiveFalse(url).forEach(site -> drop(site.getId()));
+    }
+
+    /**
+     * Выводит из поиска сайты, которых больше нет в конфигурации.
+     */
+    @Transactional
+    public void retireUnconfigured(Collection<String> urls) {
+        siteRepository.findByActiveTrue().stream()
+                .filter(site -> !urls.contains(site.getUrl()))
+                .forEach(this::discard);
+    }
+
+    private void dropAfterCommit(int siteId) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                drop(siteId);
+            }
+        });
+    }
+
+    private void drop(int siteId) {
+        invertedIndex.removeSite(siteId);
+        cleaner.drop(siteId);
+    }
+}
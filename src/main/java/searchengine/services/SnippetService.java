@@ -0,0 +1,65 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import org.jsoup.Jsoup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import searchengine.model.Page;
+import searchengine.until.SnippetGenerator;
+import searchengine.until.TokenPositions;
+
+import java.util.*;
+
+/**
+ * Заголовки и сниппеты результатов поиска из сохранённых при индексации текста, заголовка и позиций лемм.
+ * Страницы, проиндексированные до появления этих данных, обрабатываются прежним способом по HTML.
+ */
+@Service
+@RequiredArgsConstructor
+public class SnippetService {
+
+    private static final int PAGES_PER_QUERY = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public String title(Page page) {
+        return page.getTitle() != null ? page.getTitle() : Jsoup.parse(page.getContent()).title();
+    }
+
+    /**
+     * @return сниппеты по id страницы
+     */
+    public Map<Integer, String> snippets(List<Page> pages, Set<String> lemmas, String query) {
+        Map<Integer, List<TokenPositions>> positions = loadPositions(pages, lemmas);
+        Map<Integer, String> snippets = new HashMap<>();
+        for (Page page : pages) {
+            List<TokenPositions> pagePositions = positions.get(page.getId());
+            snippets.put(page.getId(), page.getText() != null && pagePositions != null
+                    ? SnippetGenerator.generatedSnippet(page.getText(), pagePositions)
+                    : SnippetGenerator.generatedSnippet(query, page.getContent()));
+        }
+        return snippets;
+    }
+
+    private Map<Integer, List<TokenPositions>> loadPositions(List<Page> pages, Set<String> lemmas) {
+        Map<Integer, List<TokenPositions>> positions = new HashMap<>();
+        List<Integer> pageIds = pages.stream().filter(page -> page.getText() != null).map(Page::getId).toList();
+        if (lemmas.isEmpty()) {
+            return positions;
+        }
+        String lemmaParams = String.join(",", Collections.nCopies(lemmas.size(), "?"));
+        for (int from = 0; from < pageIds.size(); from += PAGES_PER_QUERY) {
+            List<Integer> chunk = pageIds.subList(from, Math.min(pageIds.size(), from + PAGES_PER_QUERY));
+            String sql = "SELECT i.page_id, i.positions FROM index i JOIN lemma l ON l.id = i.lemma_id " +
+                    "WHERE i.page_id IN (" + String.join(",", Collections.nCopies(chunk.size(), "?")) + ") " +
+                    "AND l.lemma IN (" + lemmaParams + ") AND i.positions IS NOT NULL";
+            List<Object> params = new ArrayList<>(chunk);
+            params.addAll(lemmas);
+            jdbcTemplate.query(sql, rs -> {
+                positions.computeIfAbsent(rs.getInt(1), id -> new ArrayList<>())
+                        .add(TokenPositions.fromBytes(rs.getBytes(2)));
+            }, params.toArray());
+        }
+        return positions;
+    }
+}
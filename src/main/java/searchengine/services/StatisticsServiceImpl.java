@@ -9,28 +9,30 @@ import searchengine.dto.statistics.StatisticsData;
 import searchengine.dto.statistics.StatisticsResponse;
 import searchengine.dto.statistics.TotalStatistics;
 import searchengine.model.Site;
-import searchengine.repository.LemmaRepository;
-import searchengine.repository.PageRepository;
 import searchengine.repository.SiteRepository;
 import java.time.temporal.ChronoField;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Статистика без агрегирующих запросов: число страниц и лемм берётся из {@link CorpusStatistics},
+ * признак индексации - из {@link IndexingProgress}. Из БД читается только последнее поколение каждого сайта.
+ */
 @Service
 @RequiredArgsConstructor
 public class StatisticsServiceImpl {
 
     private final SitesList sites;
 
-    private final PageRepository pageRepository;
-    private final LemmaRepository lemmaRepository;
     private final SiteRepository siteRepository;
+    private final CorpusStatistics corpusStatistics;
+    private final IndexingProgress indexingProgress;
 
     public StatisticsResponse getStatistics() {
 
         TotalStatistics total = new TotalStatistics();
         total.setSites(sites.getSites().size());
-        total.setIndexing(true);
+        total.setIndexing(indexingProgress.isIndexing());
 
         List<DetailedStatisticsItem> detailed = new ArrayList<>();
         List<SiteConfig> sitesList = sites.getSites();
@@ -38,9 +40,9 @@ public class StatisticsServiceImpl {
             DetailedStatisticsItem item = new DetailedStatisticsItem();
             item.setName(siteConfig.getName());
             item.setUrl(siteConfig.getUrl());
-            Site site = siteRepository.findByUrl(siteConfig.getUrl());
-            int pages = site == null ? 0 : pageRepository.countPagesToSite(site.getId());
-            int lemmas = site == null ? 0 : lemmaRepository.countLemmaToSite(site.getId());
+            Site site = siteRepository.findFirstByUrlOrderByIdDesc(siteConfig.getUrl());
+            int pages = site == null ? 0 : (int) corpusStatistics.pageCount(site.getId());
+            int lemmas = site == null ? 0 : (int) corpusStatistics.lemmaCount(site.getId());
             item.setPages(pages);
             item.setLemmas(lemmas);
             item.setStatus(site == null ? "Сайт не проиндексирован" : site.getStatus().toString());
@@ -0,0 +1,70 @@
+package searchengine.until;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Сохранённое состояние обхода сайта: ссылки, которые ещё предстоит загрузить (в порядке выдачи),
+ * и отпечатки всех посещённых ссылок. Очередь хранится сжатым списком {@code (глубина, URL)},
+ * отпечатки - подряд по 8 байт: случайные биты всё равно не сжимаются.
+ */
+public record CrawlCheckpoint(List<CrawlFrontier.CrawlRequest> frontier, long[] visited) {
+
+    public CrawlCheckpoint {
+        frontier = frontier.stream()
+                .sorted(Comparator.comparingInt(CrawlFrontier.CrawlRequest::depth)
+                        .thenComparingLong(CrawlFrontier.CrawlRequest::sequence))
+                .toList();
+    }
+
+    public byte[] frontierBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes))) {
+            out.writeInt(frontier.size());
+            for (CrawlFrontier.CrawlRequest request : frontier) {
+                byte[] url = request.url().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(request.depth());
+                out.writeInt(url.length);
+                out.write(url);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public byte[] visitedBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(visited.length * Long.BYTES);
+        buffer.asLongBuffer().put(visited);
+        return buffer.array();
+    }
+
+    public static CrawlCheckpoint fromBytes(byte[] frontierBytes, byte[] visitedBytes) {
+        List<CrawlFrontier.CrawlRequest> frontier = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(frontierBytes)))) {
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                int depth = in.readInt();
+                byte[] url = new byte[in.readInt()];
+                in.readFully(url);
+                frontier.add(new CrawlFrontier.CrawlRequest(new String(url, StandardCharsets.UTF_8), depth, i));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        long[] visited = new long[visitedBytes.length / Long.BYTES];
+        ByteBuffer.wrap(visitedBytes).asLongBuffer().get(visited);
+        return new CrawlCheckpoint(frontier, visited);
+    }
+}
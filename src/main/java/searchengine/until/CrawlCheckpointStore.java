@@ -0,0 +1,35 @@
+package searchengine.until;
+
+/**
+ * Место хранения {@link CrawlCheckpoint} одного сайта: {@link SiteCrawler} периодически сохраняет
+ * в него состояние обхода и при запуске продолжает с сохранённого.
+ */
+public interface CrawlCheckpointStore {
+
+    CrawlCheckpointStore NONE = new CrawlCheckpointStore() {
+        @Override
+        public CrawlCheckpoint load() {
+            return null;
+        }
+
+        @Override
+        public void save(CrawlCheckpoint checkpoint) {
+        }
+
+        @Override
+        public void clear() {
+        }
+    };
+
+    /**
+     * @return состояние прерванного обхода или {@code null}, если обход начинается заново
+     */
+    CrawlCheckpoint load();
+
+    void save(CrawlCheckpoint checkpoint);
+
+    /**
+     * Удаляет состояние после успешно завершённого обхода.
+     */
+    void clear();
+}
@@ -0,0 +1,92 @@
+package searchengine.until;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Очередь ссылок одного сайта на один запуск обхода. Ссылки с меньшей глубиной
+ * выдаются раньше, при равной глубине - в порядке обнаружения.
+ * Посещённые ссылки хранятся в {@link VisitedSet} 64-битными отпечатками {@link UrlFingerprint}
+ * канонической формы ссылки ({@link UrlCanonicalizer}), поэтому их можно сохранить
+ * в {@link CrawlCheckpoint} и восстановить без самих URL.
+ */
+public class CrawlFrontier {
+
+    public record CrawlRequest(String url, int depth, long sequence) {
+    }
+
+    private static final Comparator<CrawlRequest> ORDER = Comparator
+            .comparingInt(CrawlRequest::depth)
+            .thenComparingLong(CrawlRequest::sequence);
+
+    private final PriorityBlockingQueue<CrawlRequest> queue = new PriorityBlockingQueue<>(64, ORDER);
+    private final VisitedSet visited;
+    private final AtomicLong sequence = new AtomicLong();
+
+    public CrawlFrontier(VisitedSet visited) {
+        this.visited = visited;
+    }
+
+    /**
+     * @return {@code false}, если ссылка уже встречалась в этом обходе
+     */
+    public boolean offer(String url, int depth) {
+        if (!visited.add(fingerprint(url))) {
+            return false;
+        }
+        queue.add(new CrawlRequest(url, depth, sequence.getAndIncrement()));
+        return true;
+    }
+
+    public boolean isVisited(String url) {
+        return visited.contains(fingerprint(url));
+    }
+
+    public CrawlRequest poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return queue.poll(timeout, unit);
+    }
+
+    /**
+     * Ссылки, ещё не выданные из очереди.
+     */
+    public List<CrawlRequest> pending() {
+        return List.of(queue.toArray(CrawlRequest[]::new));
+    }
+
+    public long[] visitedFingerprints() {
+        return visited.toArray();
+    }
+
+    /**
+     * Восстанавливает очередь и посещённые ссылки прерванного обхода; порядок выдачи сохраняется.
+     */
+    public void restore(CrawlCheckpoint checkpoint) {
+        for (long fingerprint : checkpoint.visited()) {
+            visited.add(fingerprint);
+        }
+        for (CrawlRequest request : checkpoint.frontier()) {
+            visited.add(fingerprint(request.url()));
+            queue.add(new CrawlRequest(request.url(), request.depth(), sequence.getAndIncrement()));
+        }
+    }
+
+    /**
+     * Ставит в очередь уже посещённую ссылку, которую нужно загрузить ещё раз.
+     */
+    public void requeue(String url, int depth) {
+        visited.add(fingerprint(url));
+        queue.add(new CrawlRequest(url, depth, sequence.getAndIncrement()));
+    }
+
+    public void clear() {
+        queue.clear();
+        visited.clear();
+    }
+
+    private static long fingerprint(String url) {
+        return UrlFingerprint.of(UrlCanonicalizer.canonicalize(url));
+    }
+}
@@ -0,0 +1,43 @@
+package searchengine.until;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Результаты прошлой индексации сайта, по которым {@link SiteCrawler} отправляет условные запросы
+ * и пропускает неизменившиеся страницы.
+ */
+public interface CrawlHistory {
+
+    CrawlHistory EMPTY = new CrawlHistory() {
+        @Override
+        public KnownPage find(String path) {
+            return null;
+        }
+
+        @Override
+        public String content(KnownPage page) {
+            return "";
+        }
+
+        @Override
+        public Collection<KnownPage> pages() {
+            return List.of();
+        }
+    };
+
+    /**
+     * @return сохранённая страница или {@code null}, если страница встречается впервые
+     */
+    KnownPage find(String path);
+
+    /**
+     * Сохранённый HTML страницы: при ответе 304 ссылки извлекаются из него.
+     */
+    String content(KnownPage page);
+
+    /**
+     * Все страницы прошлой индексации: те, что не встретились при обходе, удаляются.
+     */
+    Collection<KnownPage> pages();
+}
@@ -0,0 +1,181 @@
+package searchengine.until;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Connection;
+import org.jsoup.HttpStatusException;
+import org.jsoup.Jsoup;
+import searchengine.config.app.ConnectionSetting;
+import searchengine.config.app.CrawlerSetting;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Общий для одного запуска индексации движок обхода на виртуальных потоках.
+ * Число одновременных запросов ограничено глобально и для каждого хоста,
+ * поэтому пропускная способность определяется настройками, а не числом ядер.
+ * Для каждого хоста частота запросов ограничена {@link TokenBucket}, а robots.txt
+ * задаёт запрещённые пути и Crawl-delay, если он строже настроек.
+ * Задачи сайтов и загрузки страниц выполняются в разных исполнителях: {@link #stop()}
+ * прерывает только загрузки, а задачи сайтов успевают сохранить статус.
+ */
+@Slf4j
+public class CrawlerEngine implements AutoCloseable {
+
+    private final ExecutorService siteExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ExecutorService fetchExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore globalPermits;
+    private final Map<String, HostPolicy> hosts = new ConcurrentHashMap<>();
+    private final CrawlerSetting crawlerSetting;
+    private final ConnectionSetting connectionSetting;
+    private volatile boolean stopped;
+
+    public CrawlerEngine(CrawlerSetting crawlerSetting, ConnectionSetting connectionSetting) {
+        this.crawlerSetting = crawlerSetting;
+        this.connectionSetting = connectionSetting;
+        this.globalPermits = new Semaphore(crawlerSetting.getMaxConcurrency());
+    }
+
+    public void execute(Runnable siteTask) {
+        siteExecutor.execute(siteTask);
+    }
+
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    long checkpointIntervalMillis() {
+        return crawlerSetting.getCheckpointInterval().toMillis();
+    }
+
+    VisitedSet newVisitedSet() {
+        return new FingerprintSet(crawlerSetting.isVisitedOffHeap());
+    }
+
+    public void stop() {
+        stopped = true;
+        fetchExecutor.shutdownNow();
+    }
+
+    @Override
+    public void close() {
+        siteExecutor.shutdown();
+        fetchExecutor.shutdown();
+    }
+
+    /**
+     * Дожидается токена хоста, занимает слот хоста и глобальный слот, затем запускает
+     * {@code task} в виртуальном потоке. Слоты освобождаются по завершении задачи.
+     */
+    void submit(String url, Runnable task) throws InterruptedException {
+        HostPolicy policy = policy(url);
+        policy.rateLimit().acquire();
+        Semaphore host = policy.permits();
+        host.acquire();
+        try {
+            globalPermits.acquire();
+        } catch (InterruptedException e) {
+            host.release();
+            throw e;
+        }
+        try {
+            fetchExecutor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    globalPermits.release();
+                    host.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            globalPermits.release();
+            host.release();
+            throw e;
+        }
+    }
+
+    boolean isAllowed(String url) {
+        if (!crawlerSetting.isRespectRobots()) {
+            return true;
+        }
+        try {
+            URI uri = URI.create(url);
+            String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            return policy(url).robots().isAllowed(uri.getRawQuery() == null ? path : path + "?" + uri.getRawQuery());
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Загружает страницу. Для уже известной страницы запрос условный (If-None-Match, If-Modified-Since)
+     * и может вернуть 304 без тела; ошибки HTTP по-прежнему приводят к {@link HttpStatusException}.
+     */
+    Connection.Response fetch(String url, KnownPage known) throws IOException {
+        Connection connection = Jsoup.connect(url)
+                .userAgent(connectionSetting.getCurrentUserAgent())
+                .referrer(connectionSetting.getCurrentReferrer())
+                .timeout(crawlerSetting.getTimeout());
+        if (known == null) {
+            return connection.execute();
+        }
+        if (known.etag() != null) {
+            connection.header("If-None-Match", known.etag());
+        }
+        if (known.lastModified() != null) {
+            connection.header("If-Modified-Since", known.lastModified());
+        }
+        Connection.Response response = connection.ignoreHttpErrors(true).execute();
+        if (response.statusCode() >= 400) {
+            throw new HttpStatusException("HTTP error fetching URL", response.statusCode(), url);
+        }
+        return response;
+    }
+
+    private HostPolicy policy(String url) {
+        String host = host(url);
+        HostPolicy policy = hosts.get(host);
+        if (policy == null) {
+            RobotsRules robots = crawlerSetting.isRespectRobots() ? loadRobots(url) : RobotsRules.ALLOW_ALL;
+            TokenBucket rateLimit = robots.crawlDelayMillis() > 0
+                    ? new TokenBucket(Math.min(crawlerSetting.getRequestsPerSecond(), 1000.0 / robots.crawlDelayMillis()), 1)
+                    : new TokenBucket(crawlerSetting.getRequestsPerSecond(), crawlerSetting.getBurst());
+            policy = hosts.computeIfAbsent(host, h -> new HostPolicy(
+                    new Semaphore(crawlerSetting.getPerHostConcurrency()), rateLimit, robots));
+        }
+        return policy;
+    }
+
+    private RobotsRules loadRobots(String url) {
+        try {
+            URI uri = URI.create(url);
+            Connection.Response response = Jsoup.connect(uri.getScheme() + "://" + uri.getRawAuthority() + "/robots.txt")
+                    .userAgent(connectionSetting.getCurrentUserAgent())
+                    .timeout(crawlerSetting.getTimeout())
+                    .ignoreContentType(true)
+                    .ignoreHttpErrors(true)
+                    .execute();
+            return response.statusCode() == 200 ? RobotsRules.parse(response.body()) : RobotsRules.ALLOW_ALL;
+        } catch (IOException | IllegalArgumentException e) {
+            log.info("robots.txt недоступен для {}: {}", url, e.getMessage());
+            return RobotsRules.ALLOW_ALL;
+        }
+    }
+
+    private record HostPolicy(Semaphore permits, TokenBucket rateLimit, RobotsRules robots) {
+    }
+
+    private static String host(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host == null ? url : host;
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package searchengine.until;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * {@link VisitedSet} на открытой адресации: отпечатки лежат прямо в таблице {@code long}
+ * с линейным пробированием, без объектов на каждую ссылку. При заполнении от 3/8 до 3/4
+ * ссылка занимает 11-22 байта, миллион ссылок - около 16 МБ вместо сотен мегабайт строк.
+ * Таблица может размещаться вне кучи ({@code crawler.visited-off-heap}), тогда она не нагружает сборщик мусора.
+ * Нулевой отпечаток отмечает пустую ячейку, поэтому сам ноль хранится отдельным флагом.
+ * Проверки идут под блокировкой чтения, добавления - под блокировкой записи.
+ */
+public class FingerprintSet implements VisitedSet {
+
+    private static final int INITIAL_CAPACITY = 1 << 12;
+    private static final long EMPTY = 0L;
+
+    private final boolean offHeap;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private LongBuffer table;
+    private int size;
+    private boolean containsEmpty;
+
+    public FingerprintSet(boolean offHeap) {
+        this.offHeap = offHeap;
+        this.table = allocate(INITIAL_CAPACITY);
+    }
+
+    @Override
+    public boolean add(long fingerprint) {
+        lock.writeLock().lock();
+        try {
+            if (fingerprint == EMPTY) {
+                if (containsEmpty) {
+                    return false;
+                }
+                containsEmpty = true;
+                size++;
+                return true;
+            }
+            int slot = find(table, fingerprint);
+            if (table.get(slot) == fingerprint) {
+                return false;
+            }
+            table.put(slot, fingerprint);
+            if (++size * 4L > table.capacity() * 3L) {
+                grow();
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(long fingerprint) {
+        lock.readLock().lock();
+        try {
+            if (fingerprint == EMPTY) {
+                return containsEmpty;
+            }
+            return table.get(find(table, fingerprint)) == fingerprint;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long[] toArray() {
+        lock.readLock().lock();
+        try {
+            long[] fingerprints = new long[size];
+            int n = 0;
+            if (containsEmpty) {
+                fingerprints[n++] = EMPTY;
+            }
+            for (int i = 0; i < table.capacity(); i++) {
+                long fingerprint = table.get(i);
+                if (fingerprint != EMPTY) {
+                    fingerprints[n++] = fingerprint;
+                }
+            }
+            return fingerprints;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            table = allocate(INITIAL_CAPACITY);
+            size = 0;
+            containsEmpty = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ячейка с отпечатком или первая пустая ячейка на его пути.
+     */
+    private static int find(LongBuffer table, long fingerprint) {
+        int mask = table.capacity() - 1;
+        int slot = (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+        long current;
+        while ((current = table.get(slot)) != EMPTY && current != fingerprint) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        LongBuffer grown = allocate(table.capacity() * 2);
+        for (int i = 0; i < table.capacity(); i++) {
+            long fingerprint = table.get(i);
+            if (fingerprint != EMPTY) {
+                grown.put(find(grown, fingerprint), fingerprint);
+            }
+        }
+        table = grown;
+    }
+
+    private LongBuffer allocate(int capacity) {
+        return offHeap
+                ? ByteBuffer.allocateDirect(capacity * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer()
+                : LongBuffer.allocate(capacity);
+    }
+}
@@ -0,0 +1,8 @@
+package searchengine.until;
+
+/**
+ * Сохранённое при прошлой индексации состояние страницы: валидаторы для условного запроса
+ * (ETag, Last-Modified) и SHA-256 содержимого.
+ */
+public record KnownPage(int id, String path, int code, String etag, String lastModified, String contentHash) {
+}
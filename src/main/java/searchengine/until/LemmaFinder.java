@@ -1,5 +1,7 @@
 package searchengine.until;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.lucene.morphology.LuceneMorphology;
 import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
@@ -8,56 +10,128 @@ import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
 
+/**
+ * Лемматизатор, общий для индексации и поиска. Словари морфологии загружаются один раз,
+ * а разбор слова (нормальные формы и часть речи) запоминается в ограниченном кеше,
+ * так что повторяющиеся слова не разбираются заново. Безопасен для использования из нескольких потоков.
+ * Текст разбивается на слова {@link TokenCounter} потока без промежуточных копий текста;
+ * прежний разбор через регулярные выражения оставлен в {@link #collectLemmasLegacy(String)} для сравнения.
+ */
 @Slf4j
 public class LemmaFinder {
-    private final LuceneMorphology luceneMorphology;
+    private static final int MAX_CACHED_WORDS = 200_000;
     private static final String WORD_TYPE_REGEX = "\\W\\w&&[^а-яА-Я\\s]";
     private static final String[] particlesNames = new String[]{"МЕЖД", "ПРЕДЛ", "СОЮЗ"};
+    private static final ThreadLocal<TokenCounter> TOKEN_COUNTERS = ThreadLocal.withInitial(TokenCounter::new);
+    private static volatile LemmaFinder instance;
+
+    private final LuceneMorphology luceneMorphology;
+    private final Cache<String, WordForms> words = Caffeine.newBuilder()
+            .maximumSize(MAX_CACHED_WORDS)
+            .build();
+
+    /**
+     * Разобранное слово: служебные части речи не дают лемм.
+     */
+    private record WordForms(List<String> normalForms, boolean particle, boolean correctForm) {
+    }
 
     public static LemmaFinder getInstance() throws IOException {
-        LuceneMorphology morphology= new RussianLuceneMorphology();
-        return new LemmaFinder(morphology);
+        LemmaFinder finder = instance;
+        if (finder == null) {
+            synchronized (LemmaFinder.class) {
+                finder = instance;
+                if (finder == null) {
+                    finder = new LemmaFinder(new RussianLuceneMorphology());
+                    instance = finder;
+                    log.info("Морфология загружена");
+                }
+            }
+        }
+        return finder;
     }
 
     private LemmaFinder(LuceneMorphology luceneMorphology) {
         this.luceneMorphology = luceneMorphology;
     }
 
-    public Map<String, Integer> collectLemmas(String text) {
+    /**
+     * Леммы текста с позициями всех их вхождений: по ним строятся сниппеты без повторного разбора страницы.
+     */
+    public Map<String, TokenPositions> collectLemmaPositions(String text) {
+        TokenCounter counter = TOKEN_COUNTERS.get();
+        try {
+            counter.count(text, true);
+            String[] lemmaOfWord = new String[counter.size()];
+            for (int i = 0; i < counter.size(); i++) {
+                WordForms forms = forms(counter.word(i));
+                if (!forms.particle() && !forms.normalForms().isEmpty()) {
+                    lemmaOfWord[i] = forms.normalForms().get(0);
+                }
+            }
+            Map<String, TokenPositions> lemmas = new HashMap<>();
+            for (int k = 0; k < counter.occurrences(); k++) {
+                int word = counter.occurrenceWord(k);
+                if (lemmaOfWord[word] != null) {
+                    lemmas.computeIfAbsent(lemmaOfWord[word], lemma -> new TokenPositions())
+                            .add(counter.occurrenceStart(k), counter.length(word));
+                }
+            }
+            return lemmas;
+        } finally {
+            counter.clear();
+        }
+    }
+
+    public Map<String, Integer> collectLemmasLegacy(String text) {
         return Arrays.stream(arrayContainsRussianWords(text)).parallel()
                 .filter(word -> !word.isBlank())
-                .filter(word -> !anyWordBaseBelongToParticle(luceneMorphology.getMorphInfo(word)))
-                .map(luceneMorphology::getNormalForms)
-                .filter(normalForms -> !normalForms.isEmpty())
-                .map(normalForms -> normalForms.get(0))
+                .map(this::forms)
+                .filter(forms -> !forms.particle() && !forms.normalForms().isEmpty())
+                .map(forms -> forms.normalForms().get(0))
                 .collect(Collectors.toMap(
                         normalForm -> normalForm,
                         normalForm -> 1,
                         Integer::sum));
     }
 
-    public Set<String> getLemmaSet(String text) {
-        String[] textArray = arrayContainsRussianWords(text);
-        Set<String> lemmaSet = new HashSet<>();
-        for (String word : textArray) {
-            if (!word.isEmpty() && isCorrectWordForm(word)) {
-                List<String> wordBaseForms = luceneMorphology.getMorphInfo(word);
-                if (anyWordBaseBelongToParticle(wordBaseForms)) {
-                    continue;
+    /**
+     * Слова запроса как наборы их нормальных форм: у неоднозначного слова («стали» - «сталь», «стать»)
+     * форм несколько, а при индексации сохраняется только первая, поэтому страница подходит под слово,
+     * если на ней есть любая из его форм. Слова с одинаковым набором форм учитываются один раз.
+     */
+    public List<Set<String>> getQueryWords(String text) {
+        TokenCounter counter = TOKEN_COUNTERS.get();
+        try {
+            counter.count(text);
+            Set<Set<String>> queryWords = new LinkedHashSet<>();
+            for (int i = 0; i < counter.size(); i++) {
+                WordForms forms = forms(counter.word(i));
+                if (forms.correctForm() && !forms.particle() && !forms.normalForms().isEmpty()) {
+                    queryWords.add(Set.copyOf(forms.normalForms()));
                 }
-                lemmaSet.addAll(luceneMorphology.getNormalForms(word));
             }
+            return List.copyOf(queryWords);
+        } finally {
+            counter.clear();
         }
-        return lemmaSet;
     }
 
-    private boolean anyWordBaseBelongToParticle(List<String> wordBaseForms) {
-        return wordBaseForms.stream().anyMatch(this::hasParticleProperty);
+    private WordForms forms(String word) {
+        return words.get(word, this::analyze);
+    }
+
+    private WordForms analyze(String word) {
+        List<String> morphInfo = luceneMorphology.getMorphInfo(word);
+        boolean particle = morphInfo.stream().anyMatch(this::hasParticleProperty);
+        boolean correctForm = morphInfo.stream().noneMatch(info -> info.matches(WORD_TYPE_REGEX));
+        List<String> normalForms = particle ? List.of() : List.copyOf(luceneMorphology.getNormalForms(word));
+        return new WordForms(normalForms, particle, correctForm);
     }
 
     private boolean hasParticleProperty(String wordBase) {
-        return Arrays.stream(particlesNames)
-                .anyMatch(particlesNames -> wordBase.toUpperCase().contains(particlesNames));
+        String upperCase = wordBase.toUpperCase();
+        return Arrays.stream(particlesNames).anyMatch(upperCase::contains);
     }
 
     private String[] arrayContainsRussianWords(String text) {
@@ -65,10 +139,4 @@ public class LemmaFinder {
                 .trim()
                 .split("\\s+");
     }
-
-    private boolean isCorrectWordForm(String word) {
-        return luceneMorphology.getMorphInfo(word)
-                .stream().noneMatch(morphInfo -> morphInfo.matches(WORD_TYPE_REGEX));
-
-    }
 }
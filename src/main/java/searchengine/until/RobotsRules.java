@@ -0,0 +1,96 @@
+package searchengine.until;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Правила robots.txt для группы {@code User-agent: *}: Allow/Disallow
+ * (побеждает самое длинное совпадение, при равенстве - Allow) и Crawl-delay.
+ */
+public class RobotsRules {
+
+    public static final RobotsRules ALLOW_ALL = new RobotsRules(List.of(), 0);
+
+    private record Rule(String path, Pattern pattern, boolean allow) {
+    }
+
+    private final List<Rule> rules;
+    private final long crawlDelayMillis;
+
+    private RobotsRules(List<Rule> rules, long crawlDelayMillis) {
+        this.rules = rules;
+        this.crawlDelayMillis = crawlDelayMillis;
+    }
+
+    public static RobotsRules parse(String content) {
+        List<Rule> rules = new ArrayList<>();
+        long crawlDelayMillis = 0;
+        boolean groupMatches = false;
+        boolean readingAgents = false;
+        for (String rawLine : content.split("\\R")) {
+            String line = rawLine.replaceAll("#.*", "").trim();
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String field = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+            if (field.equals("user-agent")) {
+                groupMatches = (readingAgents && groupMatches) || value.equals("*");
+                readingAgents = true;
+                continue;
+            }
+            readingAgents = false;
+            if (!groupMatches) {
+                continue;
+            }
+            switch (field) {
+                case "allow", "disallow" -> {
+                    if (!value.isEmpty()) {
+                        rules.add(new Rule(value, toPattern(value), field.equals("allow")));
+                    }
+                }
+                case "crawl-delay" -> {
+                    try {
+                        crawlDelayMillis = (long) (Double.parseDouble(value) * 1000);
+                    } catch (NumberFormatException ignored) {
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+        return new RobotsRules(List.copyOf(rules), crawlDelayMillis);
+    }
+
+    public boolean isAllowed(String path) {
+        Rule best = null;
+        for (Rule rule : rules) {
+            if (rule.pattern().matcher(path).lookingAt()
+                    && (best == null || rule.path().length() > best.path().length()
+                    || (rule.path().length() == best.path().length() && rule.allow()))) {
+                best = rule;
+            }
+        }
+        return best == null || best.allow();
+    }
+
+    public long crawlDelayMillis() {
+        return crawlDelayMillis;
+    }
+
+    private static Pattern toPattern(String path) {
+        boolean anchored = path.endsWith("$");
+        String body = anchored ? path.substring(0, path.length() - 1) : path;
+        StringBuilder regex = new StringBuilder();
+        for (String part : body.split("\\*", -1)) {
+            if (!regex.isEmpty()) {
+                regex.append(".*");
+            }
+            regex.append(Pattern.quote(part));
+        }
+        return Pattern.compile(anchored ? regex + "$" : regex.toString());
+    }
+}
@@ -0,0 +1,87 @@
+package searchengine.until;
+
+import searchengine.config.cache.TaggedCacheKey;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * Ключ кешей поиска. Запрос представлен отсортированным списком слов, слово - его отсортированные
+ * нормальные формы через {@code |}, поэтому разные словоформы и порядок слов дают один ключ,
+ * а одинаковые наборы лемм с разной группировкой по словам - разные. Строка ключа - SHA-256 сайта и слов
+ * целиком, без 32-битного hashCode, для страницы выдачи к ней добавляется окно {@code :offset:limit}.
+ * Запись помечается сайтом ({@link #ALL_SITES} при поиске по всем) и каждой леммой,
+ * по этим меткам {@code SearchCacheInvalidator} удаляет только затронутые записи.
+ *
+ * @param offset начало окна выдачи или -1 для ранжированного списка
+ */
+public record SearchCacheKey(String siteUrl, List<String> words, int offset, int limit) implements TaggedCacheKey {
+
+    public static final String ALL_SITES = "*";
+    private static final String FORM_SEPARATOR = "|";
+
+    /**
+     * Ключ ранжированного списка страниц по словам запроса в пределах сайта ({@code null} - все сайты).
+     */
+    public static SearchCacheKey ranking(List<Set<String>> words, String siteUrl) {
+        return page(words, siteUrl, -1, -1);
+    }
+
+    /**
+     * Ключ страницы выдачи: ранжированный список и окно {@code [offset, offset + limit)}.
+     */
+    public static SearchCacheKey page(List<Set<String>> words, String siteUrl, int offset, int limit) {
+        Set<String> canonical = new TreeSet<>();
+        for (Set<String> forms : words) {
+            canonical.add(String.join(FORM_SEPARATOR, new TreeSet<>(forms)));
+        }
+        return new SearchCacheKey(siteUrl == null ? ALL_SITES : siteUrl, List.copyOf(canonical), offset, limit);
+    }
+
+    public static String siteTag(String siteUrl) {
+        return "site:" + siteUrl;
+    }
+
+    public static String lemmaTag(String lemma) {
+        return "lemma:" + lemma;
+    }
+
+    @Override
+    public Collection<String> tags() {
+        Set<String> tags = new LinkedHashSet<>();
+        tags.add(siteTag(siteUrl));
+        for (String word : words) {
+            for (String lemma : word.split(Pattern.quote(FORM_SEPARATOR))) {
+                tags.add(lemmaTag(lemma));
+            }
+        }
+        return tags;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder canonical = new StringBuilder(siteUrl);
+        for (String word : words) {
+            canonical.append('\n').append(word);
+        }
+        String key = sha256(canonical.toString());
+        return offset < 0 ? key : key + ":" + offset + ":" + limit;
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
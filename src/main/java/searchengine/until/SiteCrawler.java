@@ -1,102 +1,344 @@
 package searchengine.until;
 
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.jsoup.Connection;
+import org.jsoup.HttpStatusException;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
-import searchengine.config.app.ConnectionSetting;
+import searchengine.config.metrics.SearchEngineMetrics;
 import searchengine.model.Page;
 
 import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 
+/**
+ * Обход одного сайта через {@link CrawlerEngine}: найденные ссылки попадают в {@link CrawlFrontier},
+ * из которого страницы (сначала менее глубокие) по мере освобождения слотов загружаются в виртуальных потоках.
+ * Каждая скачанная страница отдаётся в {@code sink}, как только из неё извлечены ссылки.
+ * <p>
+ * Раз в {@code crawler.checkpoint-interval} и в конце обхода состояние сохраняется в {@link CrawlCheckpointStore}:
+ * очередь, посещённые ссылки и открытые ссылки - взятые из очереди, но ещё не сохранённые
+ * (загружаются или ждут записи, о которой сообщает {@link #written(Page)}). Открытые ссылки попадают
+ * в сохранённую очередь, поэтому после остановки или падения обход продолжается без потерь;
+ * уже сохранённые к тому времени страницы узнаются по {@link CrawlHistory}. Снимок делается под
+ * блокировкой записи, а переходы ссылки между очередью, открытыми и сохранёнными - под блокировкой чтения,
+ * так что снимок согласован, а обход между снимками не сериализуется.
+ * <p>
+ * При повторном обходе {@link CrawlHistory} даёт валидаторы прошлой загрузки: ответ 304 или
+ * совпавший SHA-256 содержимого означают, что страница не изменилась, и в {@code sink} она не попадает.
+ * Изменившаяся страница уходит в {@code sink} с id прежней записи. Если загрузка уже известной страницы
+ * не удалась, сохранённая версия остаётся, а ссылка не закрывается и попадёт в следующий снимок;
+ * строка с ошибкой пишется только для новой страницы. Прерванная остановкой загрузка ошибкой не считается.
+ * <p>
+ * Обход останавливается вместе с {@link CrawlerEngine} или отдельно для сайта через {@link #abort()},
+ * например когда сохранение страниц сайта не удалось и дальнейшие загрузки всё равно будут отброшены.
+ * <p>
+ * Время каждого запроса и итог обработки страницы пишутся в {@link SearchEngineMetrics} с тегом сайта,
+ * найденные и загруженные ссылки и размер очереди обхода - в {@link SiteProgress}.
+ */
 @Slf4j
-public class SiteCrawler extends RecursiveTask<List<Page>> {
+public class SiteCrawler {
 
-    private final String HEAD_URL;
-    private final String another_url;
-    private final static Set<String> visitedUrls = ConcurrentHashMap.newKeySet();
-    private final ConnectionSetting setting;
+    private static final long POLL_MILLIS = 100;
+    private static final int FAILED_CODE = 500;
     private static final Pattern FILE_PATTERN = Pattern
             .compile(".*\\.(jpg|jpeg|png|gif|bmp|pdf|doc|docx|xls|xlsx|ppt|pptx|zip|rar|tar|gz|7z|mp3|wav|mp4|mkv|avi|mov|sql|webp)$",
                     Pattern.CASE_INSENSITIVE);
 
-    public SiteCrawler(String site,String another_url, ConnectionSetting setting) {
+    private final CrawlerEngine engine;
+    private final String HEAD_URL;
+    private final Consumer<Page> sink;
+    private final CrawlFrontier frontier;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final CrawlHistory history;
+    private final SearchEngineMetrics metrics;
+    private final SiteProgress progress;
+    private final CrawlCheckpointStore checkpoints;
+    private final Map<String, CrawlFrontier.CrawlRequest> open = new ConcurrentHashMap<>();
+    private final ReadWriteLock stateLock = new ReentrantReadWriteLock();
+    private final Set<String> seenPaths = ConcurrentHashMap.newKeySet();
+    private volatile boolean aborted;
+
+    public SiteCrawler(CrawlerEngine engine, String site, Consumer<Page> sink, CrawlHistory history,
+                       SearchEngineMetrics metrics, SiteProgress progress, CrawlCheckpointStore checkpoints) {
+        this.engine = engine;
         this.HEAD_URL = site;
-        this.another_url = another_url;
-        this.setting = setting;
+        this.sink = sink;
+        this.history = history;
+        this.metrics = metrics;
+        this.progress = progress;
+        this.checkpoints = checkpoints;
+        this.frontier = new CrawlFrontier(engine.newVisitedSet());
+        progress.trackFrontier(pending::get);
+    }
+
+    /**
+     * Пути всех страниц, загруженных за обход, включая неизменившиеся.
+     */
+    public Set<String> seenPaths() {
+        return seenPaths;
+    }
+
+    /**
+     * Страница записана в БД: её ссылка больше не нужна для продолжения обхода.
+     */
+    public void written(Page page) {
+        settle(HEAD_URL + page.getPath());
     }
 
-    @Override
-    public List<Page> compute() {
-        Page currentPage = new Page(another_url.substring(HEAD_URL.length()));
-        List<Page> pages = new CopyOnWriteArrayList<>();
-        if (visitedUrls.contains(another_url)) {
-            return pages;
+    /**
+     * Прекращает обход только этого сайта: новые ссылки не загружаются, начатые загрузки дожидаются завершения.
+     */
+    public void abort() {
+        aborted = true;
+    }
+
+    private boolean isStopped() {
+        return aborted || engine.isStopped();
+    }
+
+    /**
+     * Обходит сайт и возвращается, когда очередь ссылок исчерпана или индексация остановлена.
+     * Если в {@link CrawlCheckpointStore} есть состояние прерванного обхода, продолжает с него.
+     */
+    public void crawl() {
+        CrawlCheckpoint restored = checkpoints.load();
+        if (restored != null) {
+            frontier.restore(restored);
+            pending.addAndGet(restored.frontier().size());
+            int retried = retryFailed(restored);
+            log.info("Обход сайта {} продолжается: в очереди {}, посещено {}, повторно загружаются {}", HEAD_URL,
+                    restored.frontier().size(), restored.visited().length, retried);
+        } else {
+            enqueue(HEAD_URL, 0);
         }
-        if(Thread.currentThread().isInterrupted() || getPool().isShutdown()){
+        long checkpointNanos = TimeUnit.MILLISECONDS.toNanos(engine.checkpointIntervalMillis());
+        long nextCheckpoint = System.nanoTime() + checkpointNanos;
+        try {
+            while (!isStopped()) {
+                if (System.nanoTime() >= nextCheckpoint) {
+                    checkpoint();
+                    nextCheckpoint = System.nanoTime() + checkpointNanos;
+                }
+                CrawlFrontier.CrawlRequest request = take();
+                if (request == null) {
+                    if (pending.get() == 0) {
+                        break;
+                    }
+                    continue;
+                }
+                if (!engine.isAllowed(request.url())) {
+                    log.info("URL запрещён robots.txt: {}", request.url());
+                    settle(request.url());
+                    pending.decrementAndGet();
+                    continue;
+                }
+                inFlight.incrementAndGet();
+                engine.submit(request.url(), () -> {
+                    try {
+                        visit(request);
+                    } finally {
+                        inFlight.decrementAndGet();
+                        pending.decrementAndGet();
+                    }
+                });
+            }
+            while (inFlight.get() > 0) {
+                Thread.sleep(POLL_MILLIS);
+            }
+        } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            return pages;
+        } catch (RejectedExecutionException e) {
+            inFlight.decrementAndGet();
+            log.info("Обход сайта {} остановлен", HEAD_URL);
+        } finally {
+            checkpoint();
+            frontier.clear();
+        }
+    }
+
+    /**
+     * Страницы, записанные прерванным запуском с ошибкой, при продолжении загружаются заново:
+     * ошибка могла быть вызвана самим прерыванием, а сохранённая ссылка уже считается посещённой.
+     */
+    private int retryFailed(CrawlCheckpoint restored) {
+        Set<String> queued = new HashSet<>();
+        restored.frontier().forEach(request -> queued.add(request.url()));
+        int retried = 0;
+        for (KnownPage page : history.pages()) {
+            String url = HEAD_URL + page.path();
+            if (page.code() == FAILED_CODE && !queued.contains(url)) {
+                frontier.requeue(url, 1);
+                pending.incrementAndGet();
+                retried++;
+            }
+        }
+        return retried;
+    }
+
+    private CrawlFrontier.CrawlRequest take() throws InterruptedException {
+        stateLock.readLock().lock();
+        try {
+            CrawlFrontier.CrawlRequest request = frontier.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if (request != null) {
+                open.put(request.url(), request);
+            }
+            return request;
+        } finally {
+            stateLock.readLock().unlock();
         }
-        visitedUrls.add(another_url);
-        log.info("Индексация URL: {}", another_url);
-        List<SiteCrawler> crawler = new CopyOnWriteArrayList<>();
+    }
+
+    private void settle(String url) {
+        stateLock.readLock().lock();
         try {
-            Connection.Response response = Jsoup.connect(another_url)
-                    .userAgent(setting.getCurrentUserAgent())
-                    .referrer(setting.getCurrentReferrer())
-                    .timeout(5000)
-                    .execute();
-
-            currentPage.setCode(response.statusCode());
-            currentPage.setContent(response.body());
-            Document document = response.parse();
-            Elements elements = document.select("a");
-            pages.add(currentPage);
-            for (Element element : elements) {
-                if(Thread.currentThread().isInterrupted() || getPool().isShutdown()){
-                    Thread.currentThread().interrupt();
-                    return pages;
-                }
-                String abshref = element.attr("abs:href");
-                if (isValidLink(abshref.trim())) {
-                    SiteCrawler siteCrawler = new SiteCrawler(HEAD_URL,abshref,setting);
-                    siteCrawler.fork();
-                    crawler.add(siteCrawler);
+            open.remove(url);
+        } finally {
+            stateLock.readLock().unlock();
+        }
+    }
+
+    private void checkpoint() {
+        CrawlCheckpoint checkpoint;
+        stateLock.writeLock().lock();
+        try {
+            List<CrawlFrontier.CrawlRequest> remaining = new ArrayList<>(frontier.pending());
+            remaining.addAll(open.values());
+            checkpoint = new CrawlCheckpoint(remaining, frontier.visitedFingerprints());
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+        try {
+            checkpoints.save(checkpoint);
+        } catch (RuntimeException e) {
+            log.error("Не удалось сохранить состояние обхода сайта {}", HEAD_URL, e);
+        }
+    }
+
+    private void visit(CrawlFrontier.CrawlRequest request) {
+        if (isStopped()) {
+            return;
+        }
+        String url = request.url();
+        log.info("Индексация URL: {}", url);
+        Page currentPage = new Page(url.substring(HEAD_URL.length()));
+        KnownPage known = history.find(currentPage.getPath());
+        seenPaths.add(currentPage.getPath());
+        if (known != null) {
+            currentPage.setId(known.id());
+        }
+        try {
+            Connection.Response response = fetch(url, known);
+            progress.fetched();
+            Document document;
+            boolean changed = false;
+            if (known != null && response.statusCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                document = Jsoup.parse(history.content(known), url);
+                metrics.crawled(HEAD_URL, "unchanged");
+            } else {
+                currentPage.setCode(response.statusCode());
+                currentPage.setContent(response.body());
+                currentPage.setEtag(response.header("ETag"));
+                currentPage.setLastModified(response.header("Last-Modified"));
+                currentPage.setContentHash(sha256(currentPage.getContent()));
+                document = response.parse();
+                if (known == null || known.code() != currentPage.getCode()
+                        || !currentPage.getContentHash().equals(known.contentHash())) {
+                    changed = true;
+                    metrics.crawled(HEAD_URL, "changed");
+                } else {
+                    metrics.crawled(HEAD_URL, "unchanged");
                 }
             }
-            for (SiteCrawler siteCrawler : crawler) {
-                if(Thread.currentThread().isInterrupted() || getPool().isShutdown()){
-                    Thread.currentThread().interrupt();
-                    return pages;
+            for (Element element : document.select("a")) {
+                if (isStopped()) {
+                    return;
                 }
-                List<Page> resultPages = siteCrawler.join();
-                pages.addAll(resultPages);
+                enqueue(element.attr("abs:href").trim(), request.depth() + 1);
+            }
+            if (changed) {
+                sink.accept(currentPage);
+            } else {
+                settle(url);
             }
-
         } catch (IOException e) {
-            log.info("Недействительный URL: {}", another_url);
-            currentPage.setCode(500);
-            currentPage.setContent(e.getMessage().isEmpty() ? "Индексация остановлена пользователем" : e.getMessage());
-            pages.add(currentPage);
-            if(Thread.currentThread().isInterrupted() || getPool().isShutdown()){
-                Thread.currentThread().interrupt();
-                return pages;
+            if (isStopped()) {
+                return;
             }
+            log.info("Недействительный URL: {}", url);
+            metrics.crawled(HEAD_URL, "failed");
+            progress.failed();
+            if (known != null) {
+                return;
+            }
+            currentPage.setCode(FAILED_CODE);
+            currentPage.setContent(e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage());
+            sink.accept(currentPage);
+        }
+    }
+
+    private Connection.Response fetch(String url, KnownPage known) throws IOException {
+        Timer.Sample sample = metrics.startTimer();
+        try {
+            Connection.Response response = engine.fetch(url, known);
+            metrics.fetched(HEAD_URL, String.valueOf(response.statusCode()), sample);
+            return response;
+        } catch (IOException e) {
+            metrics.fetched(HEAD_URL, e instanceof HttpStatusException status
+                    ? String.valueOf(status.getStatusCode()) : "error", sample);
+            throw e;
+        }
+    }
 
+    private static String sha256(String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void enqueue(String url, int depth) {
+        if (url.equals(HEAD_URL) || isValidLink(url)) {
+            pending.incrementAndGet();
+            boolean offered;
+            stateLock.readLock().lock();
+            try {
+                offered = frontier.offer(url, depth);
+            } finally {
+                stateLock.readLock().unlock();
+            }
+            if (offered) {
+                progress.discovered();
+            } else {
+                pending.decrementAndGet();
+            }
         }
-        return pages;
     }
 
     public boolean isValidLink(String urls) {
-        return urls.startsWith(HEAD_URL) && !urls.contains("#") && !visitedUrls.contains(urls)
+        return urls.startsWith(HEAD_URL) && !urls.contains("#") && !frontier.isVisited(urls)
                 && !FILE_PATTERN.matcher(urls).matches();
 
     }
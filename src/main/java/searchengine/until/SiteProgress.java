@@ -0,0 +1,131 @@
+package searchengine.until;
+
+import searchengine.dto.statistics.IndexingProgressItem;
+import searchengine.model.Status;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Ход индексации одного сайта за один запуск: счётчики обновляют обходчик и конвейер,
+ * а снимок {@link #snapshot()} читается без блокировок и без обращений к БД.
+ * Размеры очередей читаются из источников, заданных обходчиком и конвейером; после {@link #finish}
+ * источники отпускаются, а счётчики остаются с итоговыми значениями до следующего запуска.
+ */
+public final class SiteProgress {
+
+    private static final IntSupplier EMPTY = () -> 0;
+
+    private final String url;
+    private final String name;
+    private final Instant startTime = Instant.now();
+    private final long startNanos = System.nanoTime();
+    private final LongAdder discovered = new LongAdder();
+    private final LongAdder fetched = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder lemmatized = new LongAdder();
+    private final LongAdder indexed = new LongAdder();
+    private volatile IntSupplier frontier = EMPTY;
+    private volatile IntSupplier queue = EMPTY;
+    private volatile Status status = Status.INDEXING;
+    private volatile String error = "";
+    private volatile long finishNanos;
+
+    public SiteProgress(String url, String name) {
+        this.url = url;
+        this.name = name;
+    }
+
+    public String url() {
+        return url;
+    }
+
+    public boolean isFinished() {
+        return status != Status.INDEXING;
+    }
+
+    /**
+     * Ссылка впервые попала в очередь обхода.
+     */
+    public void discovered() {
+        discovered.increment();
+    }
+
+    public void fetched() {
+        fetched.increment();
+    }
+
+    public void failed() {
+        failed.increment();
+    }
+
+    public void lemmatized() {
+        lemmatized.increment();
+    }
+
+    public void indexed(int pages) {
+        indexed.add(pages);
+    }
+
+    /**
+     * @param frontier ссылки, найденные, но ещё не загруженные
+     */
+    public void trackFrontier(IntSupplier frontier) {
+        this.frontier = frontier;
+    }
+
+    /**
+     * @param queue страницы, загруженные, но ещё не лемматизированные
+     */
+    public void trackQueue(IntSupplier queue) {
+        this.queue = queue;
+    }
+
+    /**
+     * Завершает запуск; повторный вызов ничего не меняет.
+     */
+    public synchronized void finish(Status status, String error) {
+        if (isFinished()) {
+            return;
+        }
+        finishNanos = System.nanoTime();
+        frontier = EMPTY;
+        queue = EMPTY;
+        this.error = error == null ? "" : error;
+        this.status = status;
+    }
+
+    /**
+     * Скорость - сохранённые страницы в секунду с начала запуска. Оставшееся время - сколько займёт
+     * загрузка уже найденных ссылок при текущей скорости обхода; пока обход находит новые ссылки,
+     * это нижняя оценка.
+     */
+    public IndexingProgressItem snapshot() {
+        boolean finished = isFinished();
+        long end = finished ? finishNanos : System.nanoTime();
+        double seconds = Math.max(end - startNanos, 1) / 1e9;
+        long found = discovered.sum();
+        long loaded = fetched.sum();
+        long errors = failed.sum();
+        long saved = indexed.sum();
+        double crawlRate = (loaded + errors) / seconds;
+        IndexingProgressItem item = new IndexingProgressItem();
+        item.setUrl(url);
+        item.setName(name);
+        item.setStatus(status.toString());
+        item.setError(error);
+        item.setStartTime(startTime.toEpochMilli());
+        item.setDiscovered(found);
+        item.setFetched(loaded);
+        item.setFailed(errors);
+        item.setLemmatized(lemmatized.sum());
+        item.setIndexed(saved);
+        item.setFrontier(frontier.getAsInt());
+        item.setQueue(queue.getAsInt());
+        item.setPagesPerSecond(saved / seconds);
+        item.setEtaSeconds(finished ? 0L : crawlRate > 0
+                ? Math.round(Math.max(found - loaded - errors, 0) / crawlRate) : null);
+        return item;
+    }
+}
@@ -1,14 +1,128 @@
 package searchengine.until;
 
 import org.jsoup.Jsoup;
+import org.jsoup.nodes.Entities;
 
 import java.util.Arrays;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public final class SnippetGenerator {
 
     private static final int CONTEXT_RADIUS = 200;
+    private static final int SNIPPET_LENGTH = 250;
+    private static final int LEADING_CONTEXT = 50;
+
+    /**
+     * Сниппет по сохранённому тексту страницы и позициям лемм запроса: выбирается окно
+     * длиной {@link #SNIPPET_LENGTH}, в котором встречается больше всего разных лемм (затем - больше вхождений),
+     * и вхождения выделяются по позициям, без разбора HTML и регулярных выражений.
+     *
+     * @param lemmas позиции вхождений, по одному элементу на лемму запроса
+     */
+    public static String generatedSnippet(String text, List<TokenPositions> lemmas) {
+        int capacity = lemmas.stream().mapToInt(TokenPositions::size).sum();
+        long[] spans = new long[capacity];
+        int[] lemmaOf = new int[capacity];
+        int[] lengthOf = new int[capacity];
+        int total = 0;
+        for (int lemma = 0; lemma < lemmas.size(); lemma++) {
+            TokenPositions positions = lemmas.get(lemma);
+            for (int i = 0; i < positions.size(); i++) {
+                if (positions.start(i) + positions.length(i) <= text.length()) {
+                    spans[total] = ((long) positions.start(i) << 32) | total;
+                    lemmaOf[total] = lemma;
+                    lengthOf[total++] = positions.length(i);
+                }
+            }
+        }
+        if (total == 0) {
+            return Entities.escape(text.length() > 300 ? text.substring(0, 300) : text);
+        }
+        Arrays.sort(spans, 0, total);
+
+        int[] inWindow = new int[lemmas.size()];
+        int distinct = 0;
+        int bestFirst = 0;
+        int bestDistinct = -1;
+        int bestCount = 0;
+        for (int first = 0, last = 0; last < total; last++) {
+            if (inWindow[lemmaOf[(int) spans[last]]]++ == 0) {
+                distinct++;
+            }
+            while (start(spans[last]) - start(spans[first]) > SNIPPET_LENGTH - LEADING_CONTEXT) {
+                if (--inWindow[lemmaOf[(int) spans[first++]]] == 0) {
+                    distinct--;
+                }
+            }
+            if (distinct > bestDistinct || (distinct == bestDistinct && last - first + 1 > bestCount)) {
+                bestDistinct = distinct;
+                bestCount = last - first + 1;
+                bestFirst = first;
+            }
+        }
+
+        int start = snippetStart(text, start(spans[bestFirst]));
+        int end = snippetEnd(text, start, start + SNIPPET_LENGTH);
+        StringBuilder snippet = new StringBuilder(end - start + 32);
+        int written = start;
+        for (int i = bestFirst; i < total && start(spans[i]) < end; i++) {
+            int spanStart = start(spans[i]);
+            int spanEnd = Math.min(end, spanStart + lengthOf[(int) spans[i]]);
+            if (spanStart < written) {
+                continue;
+            }
+            snippet.append(Entities.escape(text.substring(written, spanStart)))
+                    .append("<b>").append(Entities.escape(text.substring(spanStart, spanEnd))).append("</b>");
+            written = spanEnd;
+        }
+        snippet.append(Entities.escape(text.substring(written, end)));
+        char lastChar = end == 0 ? '.' : text.charAt(end - 1);
+        if (lastChar != '.' && lastChar != '!' && lastChar != '?') {
+            snippet.append("...");
+        }
+        return snippet.toString();
+    }
+
+    private static int start(long span) {
+        return (int) (span >>> 32);
+    }
+
+    /**
+     * Начало предложения не дальше {@link #LEADING_CONTEXT} символов до вхождения, иначе начало слова.
+     */
+    private static int snippetStart(String text, int index) {
+        int limit = Math.max(0, index - LEADING_CONTEXT);
+        for (int i = index; i > limit; i--) {
+            char previous = text.charAt(i - 1);
+            if (previous == '.' || previous == '!' || previous == '?') {
+                while (i < index && Character.isWhitespace(text.charAt(i))) {
+                    i++;
+                }
+                return i;
+            }
+        }
+        int i = limit;
+        while (i > 0 && i < index && !Character.isWhitespace(text.charAt(i - 1))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Конец последнего целого слова до {@code index}.
+     */
+    private static int snippetEnd(String text, int start, int index) {
+        if (index >= text.length()) {
+            return text.length();
+        }
+        int i = index;
+        while (i > start && !Character.isWhitespace(text.charAt(i))) {
+            i--;
+        }
+        return i == start ? index : i;
+    }
 
     public static String generatedSnippet(String query, String content) {
 
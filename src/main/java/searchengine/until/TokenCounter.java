@@ -0,0 +1,190 @@
+package searchengine.until;
+
+import java.util.Arrays;
+
+/**
+ * Однопроходный подсчёт русских слов текста. Слово - непрерывная последовательность букв а-я
+ * после приведения к нижнему регистру, всё остальное - разделители (как в {@code replaceAll("[^а-я\\s]", " ")}).
+ * Символы различных слов складываются в общий массив, а открытая адресация по хешу
+ * находит повторы без создания строк: строка создаётся только для различного слова в {@link #word(int)}.
+ * При подсчёте с позициями дополнительно запоминается каждое вхождение: смещение в тексте и номер слова.
+ * Экземпляр не потокобезопасен и переиспользуется через {@link #clear()}.
+ */
+public final class TokenCounter {
+
+    private static final int INITIAL_WORDS = 1 << 10;
+    private static final int INITIAL_CHARS = 1 << 14;
+    private static final int RETAINED_CHARS = 1 << 20;
+
+    private char[] chars = new char[INITIAL_CHARS];
+    private int charsUsed;
+    private int[] starts = new int[INITIAL_WORDS];
+    private int[] lengths = new int[INITIAL_WORDS];
+    private int[] hashes = new int[INITIAL_WORDS];
+    private int[] counts = new int[INITIAL_WORDS];
+    private int size;
+    private int[] table = newTable(INITIAL_WORDS * 2);
+    private boolean trackOccurrences;
+    private int[] occurrenceStarts = new int[INITIAL_WORDS];
+    private int[] occurrenceWords = new int[INITIAL_WORDS];
+    private int occurrences;
+
+    public void count(CharSequence text) {
+        count(text, false);
+    }
+
+    public void count(CharSequence text, boolean withOccurrences) {
+        trackOccurrences = withOccurrences;
+        int length = 0;
+        int hash = 0;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            if (c >= 'а' && c <= 'я') {
+                if (charsUsed + length == chars.length) {
+                    chars = Arrays.copyOf(chars, chars.length * 2);
+                }
+                chars[charsUsed + length++] = c;
+                hash = 31 * hash + c;
+            } else if (length > 0) {
+                add(length, hash, i - length);
+                length = 0;
+                hash = 0;
+            }
+        }
+        if (length > 0) {
+            add(length, hash, text.length() - length);
+        }
+    }
+
+    /**
+     * Число различных слов.
+     */
+    public int size() {
+        return size;
+    }
+
+    public String word(int i) {
+        return new String(chars, starts[i], lengths[i]);
+    }
+
+    public int count(int i) {
+        return counts[i];
+    }
+
+    public int length(int i) {
+        return lengths[i];
+    }
+
+    /**
+     * Число вхождений всех слов; без {@code withOccurrences} - 0.
+     */
+    public int occurrences() {
+        return occurrences;
+    }
+
+    public int occurrenceStart(int k) {
+        return occurrenceStarts[k];
+    }
+
+    public int occurrenceWord(int k) {
+        return occurrenceWords[k];
+    }
+
+    public void clear() {
+        if (chars.length > RETAINED_CHARS) {
+            chars = new char[INITIAL_CHARS];
+        }
+        if (table.length > RETAINED_CHARS / 16) {
+            starts = new int[INITIAL_WORDS];
+            lengths = new int[INITIAL_WORDS];
+            hashes = new int[INITIAL_WORDS];
+            counts = new int[INITIAL_WORDS];
+            table = newTable(INITIAL_WORDS * 2);
+        } else {
+            Arrays.fill(table, -1);
+        }
+        if (occurrenceStarts.length > RETAINED_CHARS / 16) {
+            occurrenceStarts = new int[INITIAL_WORDS];
+            occurrenceWords = new int[INITIAL_WORDS];
+        }
+        charsUsed = 0;
+        size = 0;
+        occurrences = 0;
+    }
+
+    /**
+     * Слово длиной {@code length} уже записано в {@code chars} начиная с {@code charsUsed}:
+     * новое слово там и остаётся, повтор - увеличивает счётчик и перезаписывается следующим словом.
+     */
+    private void add(int length, int hash, int textOffset) {
+        int mask = table.length - 1;
+        for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+            int word = table[slot];
+            if (word < 0) {
+                word = append(length, hash);
+                table[slot] = word;
+                if (size * 2 > table.length) {
+                    rehash();
+                }
+                occurrence(word, textOffset);
+                return;
+            }
+            if (hashes[word] == hash && lengths[word] == length
+                    && Arrays.equals(chars, starts[word], starts[word] + length, chars, charsUsed, charsUsed + length)) {
+                counts[word]++;
+                occurrence(word, textOffset);
+                return;
+            }
+        }
+    }
+
+    private void occurrence(int word, int textOffset) {
+        if (!trackOccurrences) {
+            return;
+        }
+        if (occurrences == occurrenceStarts.length) {
+            occurrenceStarts = Arrays.copyOf(occurrenceStarts, occurrences * 2);
+            occurrenceWords = Arrays.copyOf(occurrenceWords, occurrences * 2);
+        }
+        occurrenceStarts[occurrences] = textOffset;
+        occurrenceWords[occurrences++] = word;
+    }
+
+    private int append(int length, int hash) {
+        if (size == starts.length) {
+            int capacity = size * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+        starts[size] = charsUsed;
+        lengths[size] = length;
+        hashes[size] = hash;
+        counts[size] = 1;
+        charsUsed += length;
+        return size++;
+    }
+
+    private void rehash() {
+        table = newTable(table.length * 2);
+        int mask = table.length - 1;
+        for (int word = 0; word < size; word++) {
+            int slot = mix(hashes[word]) & mask;
+            while (table[slot] >= 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = word;
+        }
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int[] newTable(int capacity) {
+        int[] table = new int[capacity];
+        Arrays.fill(table, -1);
+        return table;
+    }
+}
@@ -0,0 +1,87 @@
+package searchengine.until;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Вхождения одной леммы в тексте страницы: пары (смещение, длина) по возрастанию смещения.
+ * Хранятся в {@code index.positions} как varint: разность смещений с предыдущим вхождением и длина.
+ */
+public final class TokenPositions {
+
+    private int[] spans;
+    private int size;
+
+    public TokenPositions() {
+        this(4);
+    }
+
+    private TokenPositions(int capacity) {
+        spans = new int[capacity * 2];
+    }
+
+    public void add(int start, int length) {
+        if (size * 2 == spans.length) {
+            spans = Arrays.copyOf(spans, spans.length * 2);
+        }
+        spans[size * 2] = start;
+        spans[size * 2 + 1] = length;
+        size++;
+    }
+
+    /**
+     * Число вхождений.
+     */
+    public int size() {
+        return size;
+    }
+
+    public int start(int i) {
+        return spans[i * 2];
+    }
+
+    public int length(int i) {
+        return spans[i * 2 + 1];
+    }
+
+    public byte[] toBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size * 3);
+        int previous = 0;
+        for (int i = 0; i < size; i++) {
+            writeVarInt(out, start(i) - previous);
+            writeVarInt(out, length(i));
+            previous = start(i);
+        }
+        return out.toByteArray();
+    }
+
+    public static TokenPositions fromBytes(byte[] bytes) {
+        TokenPositions positions = new TokenPositions(Math.max(1, bytes.length / 3));
+        int[] offset = {0};
+        int start = 0;
+        while (offset[0] < bytes.length) {
+            start += readVarInt(bytes, offset);
+            positions.add(start, readVarInt(bytes, offset));
+        }
+        return positions;
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(byte[] bytes, int[] offset) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = bytes[offset[0]++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package searchengine.until;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Каноническая форма URL для отпечатка посещённой ссылки, чтобы разные записи одной страницы
+ * не загружались повторно. Схема и хост приводятся к нижнему регистру, порт по умолчанию и фрагмент
+ * отбрасываются, завершающий {@code /} пути убирается (пустой путь - {@code /}), из запроса
+ * удаляются метки рекламных систем, а остальные параметры сортируются.
+ * Загружается страница по исходной ссылке: каноническая форма нужна только для сравнения.
+ */
+public final class UrlCanonicalizer {
+
+    private static final Set<String> TRACKING_PARAMS = Set.of(
+            "gclid", "gclsrc", "dclid", "fbclid", "msclkid", "yclid", "ymclid", "_openstat", "mc_cid", "mc_eid");
+
+    private UrlCanonicalizer() {
+    }
+
+    public static String canonicalize(String url) {
+        int schemeEnd = url.indexOf("://");
+        if (schemeEnd <= 0) {
+            return url;
+        }
+        int fragment = url.indexOf('#');
+        if (fragment >= 0) {
+            url = url.substring(0, fragment);
+        }
+        String scheme = url.substring(0, schemeEnd).toLowerCase(Locale.ROOT);
+        int authorityStart = schemeEnd + 3;
+        int authorityEnd = indexOfAny(url, authorityStart, '/', '?');
+        String authority = url.substring(authorityStart, authorityEnd).toLowerCase(Locale.ROOT);
+        if (scheme.equals("http") && authority.endsWith(":80")
+                || scheme.equals("https") && authority.endsWith(":443")) {
+            authority = authority.substring(0, authority.lastIndexOf(':'));
+        }
+        int queryStart = url.indexOf('?', authorityEnd);
+        String path = url.substring(authorityEnd, queryStart < 0 ? url.length() : queryStart);
+        while (path.length() > 1 && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        if (path.isEmpty()) {
+            path = "/";
+        }
+        StringBuilder canonical = new StringBuilder(url.length())
+                .append(scheme).append("://").append(authority).append(path);
+        if (queryStart >= 0) {
+            List<String> params = new ArrayList<>();
+            for (String param : url.substring(queryStart + 1).split("&")) {
+                if (!param.isEmpty() && !isTracking(param)) {
+                    params.add(param);
+                }
+            }
+            params.sort(null);
+            if (!params.isEmpty()) {
+                canonical.append('?').append(String.join("&", params));
+            }
+        }
+        return canonical.toString();
+    }
+
+    private static boolean isTracking(String param) {
+        int eq = param.indexOf('=');
+        String name = (eq < 0 ? param : param.substring(0, eq)).toLowerCase(Locale.ROOT);
+        return name.startsWith("utm_") || TRACKING_PARAMS.contains(name);
+    }
+
+    private static int indexOfAny(String s, int from, char a, char b) {
+        for (int i = from; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == a || c == b) {
+                return i;
+            }
+        }
+        return s.length();
+    }
+}
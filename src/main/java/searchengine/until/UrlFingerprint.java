@@ -0,0 +1,26 @@
+package searchengine.until;
+
+/**
+ * 64-битный отпечаток URL для множества посещённых ссылок: FNV-1a по символам строки
+ * с перемешиванием из SplitMix64, чтобы все биты зависели от всей строки.
+ * Вероятность совпадения отпечатков двух разных URL около {@code n^2 / 2^65},
+ * для десяти миллионов ссылок сайта - порядка 10^-6.
+ */
+public final class UrlFingerprint {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private UrlFingerprint() {
+    }
+
+    public static long of(CharSequence url) {
+        long hash = FNV_OFFSET;
+        for (int i = 0, n = url.length(); i < n; i++) {
+            hash = (hash ^ url.charAt(i)) * FNV_PRIME;
+        }
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+}
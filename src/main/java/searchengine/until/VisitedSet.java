@@ -0,0 +1,24 @@
+package searchengine.until;
+
+/**
+ * Посещённые ссылки одного обхода в виде 64-битных отпечатков {@link UrlFingerprint}.
+ * Реализация выбирается в {@link CrawlerEngine} по настройкам; все методы потокобезопасны.
+ */
+public interface VisitedSet {
+
+    /**
+     * @return {@code false}, если отпечаток уже есть
+     */
+    boolean add(long fingerprint);
+
+    boolean contains(long fingerprint);
+
+    int size();
+
+    /**
+     * Все отпечатки в произвольном порядке - для {@link CrawlCheckpoint}.
+     */
+    long[] toArray();
+
+    void clear();
+}
@@ -0,0 +1,96 @@
+package searchengine.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IndexSegmentTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsBackWrittenTermsAndPages() throws IOException {
+        IndexSegment segment = write("a.seg", new int[]{3, 1, 2}, 1);
+
+        assertEquals(3, segment.pageCount());
+        assertEquals(2, segment.termCount());
+        assertEquals(1, segment.pageIdAt(0));
+        assertEquals(30, segment.pageLength(3));
+        assertEquals(3, segment.pageCount(1));
+        assertEquals(60, segment.totalPageLength(1));
+        List<TermEntry> terms = segment.terms("кот");
+        assertEquals(1, terms.size());
+        assertEquals(1, terms.get(0).siteId());
+        assertArrayEquals(new int[]{1, 2, 3}, PostingListTest.ids(segment.postings(terms.get(0))));
+        assertTrue(segment.terms("пёс").isEmpty());
+    }
+
+    @Test
+    void keepsDeletesAfterReopen() throws IOException {
+        IndexSegment segment = write("a.seg", new int[]{1, 2, 3}, 1);
+
+        segment.deletePages(List.of(2, 3, 2));
+        IndexSegment reopened = IndexSegment.open(segment.file());
+
+        assertEquals(1, reopened.livePageCount());
+        assertTrue(reopened.isPageDeleted(2));
+        assertFalse(reopened.isPageDeleted(1));
+    }
+
+    @Test
+    void mergeKeepsOnlyLivePages() throws IOException {
+        IndexSegment first = write("a.seg", new int[]{1, 2}, 1);
+        IndexSegment second = write("b.seg", new int[]{3, 4}, 1);
+        IndexSegment other = write("c.seg", new int[]{5}, 2);
+        first.deletePages(List.of(2));
+        other.deleteSite(2);
+
+        SegmentWriter writer = new SegmentWriter(directory.resolve("merged.seg"));
+        SegmentMerger.merge(List.of(first, second, other), writer);
+        writer.close();
+        IndexSegment merged = IndexSegment.open(writer.file());
+
+        assertEquals(3, merged.pageCount());
+        assertFalse(merged.containsPage(2));
+        assertFalse(merged.containsPage(5));
+        assertEquals(1, merged.terms("кот").size());
+        assertArrayEquals(new int[]{1, 3, 4}, PostingListTest.ids(merged.postings(merged.terms("кот").get(0))));
+        assertArrayEquals(new int[]{4}, PostingListTest.ids(merged.postings(merged.terms("чётный").get(0))));
+    }
+
+    /**
+     * Сегмент, где все страницы содержат "кот", а чётные ещё и "чётный"; длина страницы - id * 10.
+     */
+    private IndexSegment write(String name, int[] pageIds, int siteId) throws IOException {
+        int[] sorted = pageIds.clone();
+        Arrays.sort(sorted);
+        float[] ranks = new float[sorted.length];
+        int[] even = new int[sorted.length];
+        int evenCount = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            ranks[i] = sorted[i];
+            if (sorted[i] % 2 == 0) {
+                even[evenCount++] = sorted[i];
+            }
+        }
+        SegmentWriter writer = new SegmentWriter(directory.resolve(name));
+        for (int pageId : pageIds) {
+            writer.addPage(pageId, siteId, pageId * 10);
+        }
+        writer.addTerm("кот", siteId, 10, PostingList.of(sorted, ranks, sorted.length));
+        writer.addTerm("чётный", siteId, 11, PostingList.of(even, new float[evenCount], evenCount));
+        writer.finish();
+        writer.close();
+        return IndexSegment.open(writer.file());
+    }
+}
@@ -0,0 +1,185 @@
+package searchengine.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import searchengine.config.app.IndexSetting;
+import searchengine.model.Index;
+import searchengine.model.Lemma;
+import searchengine.model.Page;
+import searchengine.model.Site;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InvertedIndexTest {
+
+    private static final int SITE_ID = 1;
+
+    @TempDir
+    Path directory;
+
+    private final Site site = new Site();
+    private final Lemma lemma = Lemma.builder().site(site).lemma("кот").frequency(1).build();
+
+    InvertedIndexTest() {
+        site.setId(SITE_ID);
+        lemma.setId(10);
+    }
+
+    @Test
+    void buffersPagesUntilFlushThreshold() throws IOException {
+        InvertedIndex index = open(3);
+
+        write(index, 1, 2);
+        assertEquals(0, index.segmentCount());
+        write(index, 3);
+        assertEquals(1, index.segmentCount());
+        assertEquals(3, index.pageCount());
+
+        SearchHits hits = index.search(List.of(Set.of("кот")), List.of(SITE_ID), 2.0, 10);
+        assertEquals(3, hits.totalHits());
+    }
+
+    @Test
+    void removesBufferedAndWrittenPages() throws IOException {
+        InvertedIndex index = open(2);
+        write(index, 1, 2);
+        write(index, 3);
+
+        index.apply(SITE_ID, List.of(2, 3), List.of(), List.of());
+        index.flush();
+
+        assertEquals(1, index.pageCount());
+        SearchHits hits = index.search(List.of(Set.of("кот")), List.of(SITE_ID), 2.0, 10);
+        assertEquals(1, hits.totalHits());
+        assertEquals(1, hits.pageId(0));
+    }
+
+    @Test
+    void manifestKeepsBatchCountsOfFlushedPages() throws IOException {
+        InvertedIndex index = open(100);
+        write(index, 1);
+        write(index, 2);
+        assertTrue(index.indexedBatches().isEmpty());
+
+        index.flush();
+        InvertedIndex reopened = open(100);
+
+        assertEquals(Map.of(SITE_ID, 2L), reopened.indexedBatches());
+        assertEquals(2, reopened.pageCount());
+    }
+
+    @Test
+    void removeSitePagesLeavesSiteSearchable() throws IOException {
+        InvertedIndex index = open(1);
+        write(index, 1);
+
+        index.removeSitePages(SITE_ID);
+        index.markSynchronized(SITE_ID, 5);
+        write(index, 2);
+
+        assertEquals(1, index.pageCount());
+        assertEquals(2, index.search(List.of(Set.of("кот")), List.of(SITE_ID), 2.0, 10).pageId(0));
+        assertEquals(Map.of(SITE_ID, 6L), open(1).indexedBatches());
+    }
+
+    @Test
+    void matchesWordByAnyOfItsNormalForms() throws IOException {
+        InvertedIndex index = open(100);
+        Lemma become = Lemma.builder().site(site).lemma("стать").frequency(1).build();
+        become.setId(11);
+        Lemma steel = Lemma.builder().site(site).lemma("сталь").frequency(1).build();
+        steel.setId(12);
+        List<Page> pages = List.of(page(1), page(2), page(3));
+        List<Index> indexes = List.of(entry(pages.get(0), lemma, 1), entry(pages.get(0), become, 1),
+                entry(pages.get(1), lemma, 1), entry(pages.get(1), steel, 1), entry(pages.get(2), steel, 1));
+        index.apply(SITE_ID, List.of(), pages, indexes);
+        index.flush();
+
+        SearchHits hits = index.search(List.of(Set.of("кот"), Set.of("сталь", "стать")), List.of(SITE_ID), 2.0, 10);
+
+        assertEquals(2, hits.totalHits());
+        assertEquals(Set.of(1, 2), Set.of(hits.pageId(0), hits.pageId(1)));
+    }
+
+    @Test
+    void blockMaxPruningKeepsExhaustiveTopPages() throws IOException {
+        InvertedIndex index = open(100_000);
+        Lemma dog = Lemma.builder().site(site).lemma("пёс").frequency(1).build();
+        dog.setId(11);
+        Lemma filler = Lemma.builder().site(site).lemma("и").frequency(1).build();
+        filler.setId(12);
+        Random random = new Random(5);
+        List<Page> pages = new ArrayList<>();
+        List<Index> indexes = new ArrayList<>();
+        for (int pageId = 1; pageId <= 5000; pageId++) {
+            Page page = page(pageId);
+            pages.add(page);
+            boolean relevant = pageId % 300 == 0;
+            int catRank = relevant ? 20 + random.nextInt(20) : 1;
+            int dogRank = relevant || random.nextInt(3) > 0 ? catRank : 0;
+            indexes.add(entry(page, lemma, catRank));
+            if (dogRank > 0) {
+                indexes.add(entry(page, dog, dogRank));
+            }
+            indexes.add(entry(page, filler, 100 - catRank - dogRank));
+        }
+        index.apply(SITE_ID, List.of(), pages, indexes);
+        index.flush();
+
+        SearchHits exhaustive = index.search(List.of(Set.of("кот"), Set.of("пёс")), List.of(SITE_ID), 2.0, 100_000);
+        SearchHits pruned = index.search(List.of(Set.of("кот"), Set.of("пёс")), List.of(SITE_ID), 2.0, 5);
+
+        for (int i = 0; i < pruned.size(); i++) {
+            assertEquals(exhaustive.pageId(i), pruned.pageId(i));
+            assertEquals(exhaustive.score(i), pruned.score(i));
+        }
+        assertEquals(exhaustive.totalHits(), pruned.totalHits(), exhaustive.totalHits() * 0.1);
+    }
+
+    private InvertedIndex open(int flushPages) throws IOException {
+        IndexSetting setting = new IndexSetting();
+        setting.setDirectory(directory.toString());
+        setting.setFlushPages(flushPages);
+        InvertedIndex index = new InvertedIndex(setting);
+        index.open();
+        return index;
+    }
+
+    /**
+     * Одна пачка записи со страницами {@code pageIds}, на каждой из которых есть лемма "кот".
+     */
+    private void write(InvertedIndex index, int... pageIds) {
+        List<Page> pages = new ArrayList<>();
+        List<Index> indexes = new ArrayList<>();
+        for (int pageId : pageIds) {
+            Page page = page(pageId);
+            pages.add(page);
+            indexes.add(entry(page, lemma, 1));
+        }
+        index.apply(SITE_ID, List.of(), pages, indexes);
+    }
+
+    private Page page(int pageId) {
+        Page page = new Page("/" + pageId);
+        page.setId(pageId);
+        page.setSite(site);
+        return page;
+    }
+
+    private static Index entry(Page page, Lemma lemma, float rank) {
+        Index entry = new Index();
+        entry.setPage(page);
+        entry.setLemma(lemma);
+        entry.setRank(rank);
+        return entry;
+    }
+}
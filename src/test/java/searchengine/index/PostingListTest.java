@@ -0,0 +1,151 @@
+package searchengine.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PostingListTest {
+
+    @Test
+    void roundTripsIdsAndRanksAcrossBlocks() {
+        int size = PostingList.BLOCK_SIZE * 3 + 17;
+        int[] pageIds = new int[size];
+        float[] ranks = new float[size];
+        Random random = new Random(42);
+        int pageId = 0;
+        for (int i = 0; i < size; i++) {
+            pageId += 1 + (i % 50 == 0 ? random.nextInt(1 << 24) : random.nextInt(200));
+            pageIds[i] = pageId;
+            ranks[i] = random.nextInt(100) + 0.5f;
+        }
+
+        PostingList list = PostingList.wrap(ByteBuffer.wrap(toArray(PostingList.of(pageIds, ranks, size))));
+
+        assertEquals(size, list.size());
+        assertEquals(4, list.blockCount());
+        PostingIterator iterator = list.iterator();
+        for (int i = 0; i < size; i++) {
+            assertEquals(pageIds[i], iterator.nextDoc());
+            assertEquals(ranks[i], iterator.rank());
+        }
+        assertEquals(PostingIterator.NO_MORE_DOCS, iterator.nextDoc());
+    }
+
+    @Test
+    void storesLastIdAndMaxRankPerBlock() {
+        int size = PostingList.BLOCK_SIZE * 2 + 1;
+        int[] pageIds = new int[size];
+        float[] ranks = new float[size];
+        for (int i = 0; i < size; i++) {
+            pageIds[i] = i * 3 + 1;
+            ranks[i] = i % PostingList.BLOCK_SIZE;
+        }
+        ranks[5] = 1000;
+
+        PostingList list = PostingList.of(pageIds, ranks, size);
+
+        assertEquals(pageIds[PostingList.BLOCK_SIZE - 1], list.lastPageId(0));
+        assertEquals(pageIds[size - 1], list.lastPageId(2));
+        assertEquals(1000, list.blockMaxRank(0));
+        assertEquals(PostingList.BLOCK_SIZE - 1, list.blockMaxRank(1));
+        assertEquals(0, list.blockMaxRank(2));
+    }
+
+    @Test
+    void advanceSkipsToFirstIdNotLess() {
+        int size = 1000;
+        int[] pageIds = new int[size];
+        float[] ranks = new float[size];
+        for (int i = 0; i < size; i++) {
+            pageIds[i] = i * 10;
+            ranks[i] = i;
+        }
+        PostingIterator iterator = PostingList.of(pageIds, ranks, size).iterator();
+
+        assertEquals(500, iterator.advance(495));
+        assertEquals(50, iterator.rank());
+        assertEquals(500, iterator.advance(500));
+        assertEquals(9990, iterator.advance(9981));
+        assertEquals(PostingIterator.NO_MORE_DOCS, iterator.advance(9991));
+    }
+
+    @Test
+    void shallowAdvanceFindsBlockWithoutMovingCursor() {
+        int size = PostingList.BLOCK_SIZE * 3;
+        int[] pageIds = new int[size];
+        float[] ranks = new float[size];
+        for (int i = 0; i < size; i++) {
+            pageIds[i] = i * 2;
+            ranks[i] = i / PostingList.BLOCK_SIZE + 1;
+        }
+        PostingIterator iterator = PostingList.of(pageIds, ranks, size).iterator();
+        iterator.nextDoc();
+
+        assertEquals(pageIds[2 * PostingList.BLOCK_SIZE - 1], iterator.shallowAdvance(pageIds[PostingList.BLOCK_SIZE + 3]));
+        assertEquals(2, iterator.shallowMaxRank());
+        assertEquals(0, iterator.docId());
+        assertEquals(0, iterator.ordinal());
+        assertEquals(PostingIterator.NO_MORE_DOCS, iterator.shallowAdvance(pageIds[size - 1] + 1));
+        assertEquals(pageIds[PostingList.BLOCK_SIZE], iterator.advance(pageIds[PostingList.BLOCK_SIZE]));
+        assertEquals(PostingList.BLOCK_SIZE, iterator.ordinal());
+    }
+
+    @Test
+    void mergeReplacesRanksAndDropsRemovedPages() {
+        PostingList list = PostingList.of(new int[]{1, 3, 5, 7}, new float[]{1, 3, 5, 7}, 4);
+
+        PostingList merged = list.merge(new int[]{2, 5, 8}, new float[]{20, 50, 80}, 3, pageId -> pageId == 3 || pageId == 8);
+
+        assertArrayEquals(new int[]{1, 2, 5, 7}, ids(merged));
+        assertArrayEquals(new float[]{1, 20, 50, 7}, ranks(merged));
+        assertArrayEquals(new int[]{1, 7}, ids(list.without(pageId -> pageId == 3 || pageId == 5)));
+    }
+
+    @Test
+    void unionKeepsPagesOfBothListsAndSumsSharedRanks() {
+        PostingList left = PostingList.of(new int[]{1, 3, 5}, new float[]{1, 3, 5}, 3);
+        PostingList right = PostingList.of(new int[]{2, 3, 9}, new float[]{20, 30, 90}, 3);
+
+        PostingList union = left.union(right);
+
+        assertArrayEquals(new int[]{1, 2, 3, 5, 9}, ids(union));
+        assertArrayEquals(new float[]{1, 20, 33, 5, 90}, ranks(union));
+    }
+
+    @Test
+    void rejectsUnsortedIds() {
+        assertThrows(IllegalArgumentException.class, () -> PostingList.of(new int[]{4, 4}, new float[]{1, 1}, 2));
+        assertThrows(IllegalArgumentException.class, () -> PostingList.of(new int[]{5, 2}, new float[]{1, 1}, 2));
+    }
+
+    static int[] ids(PostingList list) {
+        int[] ids = new int[list.size()];
+        PostingIterator iterator = list.iterator();
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = iterator.nextDoc();
+        }
+        return ids;
+    }
+
+    private static float[] ranks(PostingList list) {
+        float[] ranks = new float[list.size()];
+        PostingIterator iterator = list.iterator();
+        for (int i = 0; i < ranks.length; i++) {
+            iterator.nextDoc();
+            ranks[i] = iterator.rank();
+        }
+        return ranks;
+    }
+
+    private static byte[] toArray(PostingList list) {
+        ByteBuffer buffer = list.buffer();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
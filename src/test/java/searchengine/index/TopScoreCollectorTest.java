@@ -0,0 +1,67 @@
+package searchengine.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TopScoreCollectorTest {
+
+    @Test
+    void keepsTopPagesInFullSortOrder() {
+        Random random = new Random(3);
+        for (int round = 0; round < 100; round++) {
+            int size = random.nextInt(300);
+            int[] pageIds = random.ints(size, 0, 10_000).distinct().toArray();
+            double[] scores = random.ints(pageIds.length, 0, 20).asDoubleStream().toArray();
+            int k = 1 + random.nextInt(80);
+            TopScoreCollector collector = new TopScoreCollector(k);
+            for (int i = 0; i < pageIds.length; i++) {
+                collector.count();
+                collector.collect(pageIds[i], scores[i]);
+            }
+
+            SearchHits hits = collector.hits();
+
+            assertArrayEquals(sortedPageIds(pageIds, scores, k), pageIds(hits));
+            assertEquals(pageIds.length, hits.totalHits());
+        }
+    }
+
+    @Test
+    void breaksTiesByPageId() {
+        TopScoreCollector collector = new TopScoreCollector(3);
+        collector.collect(9, 1.0);
+        collector.collect(4, 2.0);
+        collector.collect(2, 1.0);
+        collector.collect(7, 1.0);
+
+        assertArrayEquals(new int[]{4, 2, 7}, pageIds(collector.hits()));
+    }
+
+    @Test
+    void emptyWithoutHitsOrSlots() {
+        TopScoreCollector none = new TopScoreCollector(0);
+        none.count();
+        none.collect(1, 1.0);
+
+        assertEquals(0, new TopScoreCollector(10).hits().size());
+        assertEquals(0, none.hits().size());
+        assertEquals(1, none.hits().totalHits());
+    }
+
+    private static int[] sortedPageIds(int[] pageIds, double[] scores, int k) {
+        return IntStream.range(0, pageIds.length).boxed()
+                .sorted(Comparator.comparingDouble((Integer i) -> -scores[i]).thenComparingInt(i -> pageIds[i]))
+                .limit(k)
+                .mapToInt(i -> pageIds[i]).toArray();
+    }
+
+    private static int[] pageIds(SearchHits hits) {
+        return IntStream.range(0, hits.size()).map(hits::pageId).toArray();
+    }
+}
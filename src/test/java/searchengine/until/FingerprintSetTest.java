@@ -0,0 +1,49 @@
+package searchengine.until;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FingerprintSetTest {
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void behavesLikeHashSetWhileGrowing(boolean offHeap) {
+        FingerprintSet set = new FingerprintSet(offHeap);
+        Set<Long> expected = new HashSet<>();
+        Random random = new Random(11);
+        for (int i = 0; i < 50_000; i++) {
+            long fingerprint = i % 1000 == 0 ? 0L : random.nextLong() % 20_000;
+            assertEquals(expected.add(fingerprint), set.add(fingerprint));
+        }
+
+        assertEquals(expected.size(), set.size());
+        for (long fingerprint = -20_000; fingerprint < 20_000; fingerprint++) {
+            assertEquals(expected.contains(fingerprint), set.contains(fingerprint));
+        }
+        assertEquals(expected, Arrays.stream(set.toArray()).boxed().collect(Collectors.toSet()));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void clearEmptiesSet(boolean offHeap) {
+        FingerprintSet set = new FingerprintSet(offHeap);
+        set.add(0L);
+        set.add(UrlFingerprint.of("https://example.com/"));
+
+        set.clear();
+
+        assertEquals(0, set.size());
+        assertFalse(set.contains(0L));
+        assertTrue(set.add(UrlFingerprint.of("https://example.com/")));
+    }
+}
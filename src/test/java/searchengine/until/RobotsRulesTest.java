@@ -0,0 +1,79 @@
+package searchengine.until;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RobotsRulesTest {
+
+    @Test
+    void appliesOnlyWildcardGroup() {
+        RobotsRules rules = RobotsRules.parse("""
+                User-agent: Googlebot
+                Disallow: /
+
+                User-agent: *
+                Disallow: /private # закрытый раздел
+                Crawl-delay: 1.5
+                """);
+
+        assertTrue(rules.isAllowed("/news"));
+        assertFalse(rules.isAllowed("/private/page"));
+        assertEquals(1500, rules.crawlDelayMillis());
+    }
+
+    @Test
+    void sharesGroupBetweenConsecutiveAgents() {
+        RobotsRules rules = RobotsRules.parse("""
+                User-agent: Yandex
+                User-agent: *
+                Disallow: /admin
+                """);
+
+        assertFalse(rules.isAllowed("/admin"));
+    }
+
+    @Test
+    void longestMatchWinsAndAllowWinsTie() {
+        RobotsRules rules = RobotsRules.parse("""
+                User-agent: *
+                Disallow: /catalog
+                Allow: /catalog/public
+                Disallow: /shop
+                Allow: /shop
+                """);
+
+        assertFalse(rules.isAllowed("/catalog/private"));
+        assertTrue(rules.isAllowed("/catalog/public/item"));
+        assertTrue(rules.isAllowed("/shop/cart"));
+    }
+
+    @Test
+    void supportsWildcardsAndEndAnchor() {
+        RobotsRules rules = RobotsRules.parse("""
+                User-agent: *
+                Disallow: /*.pdf$
+                Disallow: /*?sort=
+                """);
+
+        assertFalse(rules.isAllowed("/docs/report.pdf"));
+        assertTrue(rules.isAllowed("/docs/report.pdf.html"));
+        assertFalse(rules.isAllowed("/list?sort=price"));
+        assertTrue(rules.isAllowed("/list?page=2"));
+    }
+
+    @Test
+    void ignoresEmptyDisallowAndBadDelay() {
+        RobotsRules rules = RobotsRules.parse("""
+                User-agent: *
+                Disallow:
+                Crawl-delay: soon
+                """);
+
+        assertTrue(rules.isAllowed("/"));
+        assertEquals(0, rules.crawlDelayMillis());
+        assertTrue(RobotsRules.ALLOW_ALL.isAllowed("/anything"));
+    }
+}
@@ -0,0 +1,73 @@
+package searchengine.until;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnippetGeneratorTest {
+
+    @Test
+    void choosesWindowWithMostDistinctLemmas() {
+        String filler = "слово ".repeat(100);
+        String text = "Кот спал. " + filler + "Кот и пёс гуляли вместе. " + filler;
+
+        String snippet = SnippetGenerator.generatedSnippet(text,
+                List.of(positions(text, "Кот"), positions(text, "пёс")));
+
+        assertTrue(snippet.contains("<b>Кот</b> и <b>пёс</b> гуляли"), snippet);
+        assertFalse(snippet.contains("спал"), snippet);
+        assertTrue(snippet.startsWith("слово"), snippet);
+        assertTrue(snippet.endsWith("..."), snippet);
+    }
+
+    @Test
+    void startsAtSentenceAndEscapesText() {
+        String text = "Вступление. Цены <ниже> у нас: кот & пёс.";
+
+        String snippet = SnippetGenerator.generatedSnippet(text, List.of(positions(text, "кот")));
+
+        assertEquals("Цены &lt;ниже&gt; у нас: <b>кот</b> &amp; пёс.", snippet);
+    }
+
+    @Test
+    void fallsBackToTextStartWithoutPositions() {
+        String text = "а".repeat(400);
+
+        assertEquals("а".repeat(300), SnippetGenerator.generatedSnippet(text, List.of(new TokenPositions())));
+    }
+
+    @Test
+    void ignoresPositionsOutsideText() {
+        TokenPositions stale = new TokenPositions();
+        stale.add(1000, 3);
+
+        assertEquals("короткий текст", SnippetGenerator.generatedSnippet("короткий текст", List.of(stale)));
+    }
+
+    @Test
+    void positionsSurviveSerialization() {
+        TokenPositions positions = new TokenPositions();
+        positions.add(3, 4);
+        positions.add(300, 10);
+        positions.add(70_000, 2);
+
+        TokenPositions restored = TokenPositions.fromBytes(positions.toBytes());
+
+        assertEquals(3, restored.size());
+        assertEquals(300, restored.start(1));
+        assertEquals(10, restored.length(1));
+        assertEquals(70_000, restored.start(2));
+    }
+
+    private static TokenPositions positions(String text, String word) {
+        TokenPositions positions = new TokenPositions();
+        for (int i = text.indexOf(word); i >= 0; i = text.indexOf(word, i + 1)) {
+            positions.add(i, word.length());
+        }
+        return positions;
+    }
+}
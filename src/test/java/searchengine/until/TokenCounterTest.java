@@ -0,0 +1,84 @@
+package searchengine.until;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TokenCounterTest {
+
+    private static final String ALPHABET = "абвгдеёжзийклмнопрстуфхцчшщъыьэюяАБВЯ abcXYZ-.,!0123\n\t";
+
+    @Test
+    void countsLikeRegexSplit() {
+        Random random = new Random(7);
+        TokenCounter counter = new TokenCounter();
+        for (int round = 0; round < 200; round++) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(round < 190 ? 200 : 200_000);
+            for (int i = 0; i < length; i++) {
+                text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+            counter.clear();
+            counter.count(text);
+            assertEquals(regexCounts(text.toString()), counts(counter), text::toString);
+        }
+    }
+
+    @Test
+    void recordsOccurrencesInTextOrder() {
+        TokenCounter counter = new TokenCounter();
+        String text = "Кот и ПЁС, кот!";
+
+        counter.count(text, true);
+
+        assertEquals(4, counter.size());
+        assertEquals(5, counter.occurrences());
+        String[] words = new String[counter.occurrences()];
+        for (int k = 0; k < counter.occurrences(); k++) {
+            int word = counter.occurrenceWord(k);
+            int start = counter.occurrenceStart(k);
+            words[k] = text.substring(start, start + counter.length(word)).toLowerCase();
+            assertEquals(counter.word(word), words[k]);
+        }
+        assertEquals("кот и п с кот", String.join(" ", words));
+        assertEquals(2, counter.count(0));
+    }
+
+    @Test
+    void clearForgetsPreviousText() {
+        TokenCounter counter = new TokenCounter();
+        counter.count("один два", true);
+        counter.clear();
+
+        counter.count("три");
+
+        assertEquals(1, counter.size());
+        assertEquals("три", counter.word(0));
+        assertEquals(0, counter.occurrences());
+    }
+
+    /**
+     * Прежний подсчёт LemmaFinder через регулярное выражение.
+     */
+    private static Map<String, Integer> regexCounts(String text) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (String word : text.toLowerCase().replaceAll("[^а-я\\s]", " ").trim().split("\\s+")) {
+            if (!word.isEmpty()) {
+                counts.merge(word, 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    private static Map<String, Integer> counts(TokenCounter counter) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < counter.size(); i++) {
+            counts.put(counter.word(i), counter.count(i));
+        }
+        return counts;
+    }
+}
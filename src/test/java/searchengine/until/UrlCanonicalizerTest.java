@@ -0,0 +1,29 @@
+package searchengine.until;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UrlCanonicalizerTest {
+
+    @Test
+    void normalizesSchemeHostPortAndPath() {
+        assertEquals("https://example.com/", UrlCanonicalizer.canonicalize("HTTPS://Example.COM:443"));
+        assertEquals("http://example.com/news", UrlCanonicalizer.canonicalize("http://example.com:80/news//"));
+        assertEquals("http://example.com:8080/news", UrlCanonicalizer.canonicalize("http://example.com:8080/news/"));
+        assertEquals("https://example.com/News", UrlCanonicalizer.canonicalize("https://example.com/News#top"));
+    }
+
+    @Test
+    void dropsTrackingParamsAndSortsTheRest() {
+        assertEquals("https://example.com/list?page=2&sort=price", UrlCanonicalizer.canonicalize(
+                "https://example.com/list/?utm_source=mail&sort=price&gclid=1&page=2&UTM_Medium=x&yclid=5"));
+        assertEquals("https://example.com/", UrlCanonicalizer.canonicalize("https://example.com?fbclid=abc&&"));
+        assertEquals("https://example.com/?flag", UrlCanonicalizer.canonicalize("https://example.com?flag"));
+    }
+
+    @Test
+    void leavesRelativeUrlsAlone() {
+        assertEquals("/news/", UrlCanonicalizer.canonicalize("/news/"));
+    }
+}